@@ -0,0 +1,86 @@
+package com.widget.benchmark;
+
+import com.widget.service.WidgetServiceApp;
+import com.widget.service.model.Widget;
+import com.widget.storage.abstraction.IStorage;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Application context and widgets shared by benchmarks.
+ */
+final class BenchmarkContext {
+    static final int CANVAS_SIZE = 10_000;
+
+    private BenchmarkContext() {
+    }
+
+    /**
+     * Starts application context without web server.
+     */
+    static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(WidgetServiceApp.class)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .logStartupInfo(false)
+                .run("--logging.level.root=WARN");
+    }
+
+    /**
+     * Starts application with web server on a random port, see local.server.port property of the context.
+     * @param args Additional application arguments.
+     */
+    static ConfigurableApplicationContext startServer(String... args) {
+        List<String> allArgs = new ArrayList<>();
+        allArgs.add("--logging.level.root=WARN");
+        allArgs.add("--server.port=0");
+        allArgs.addAll(Arrays.asList(args));
+
+        return new SpringApplicationBuilder(WidgetServiceApp.class)
+                .bannerMode(Banner.Mode.OFF)
+                .logStartupInfo(false)
+                .run(allArgs.toArray(new String[0]));
+    }
+
+    /**
+     * Saves widgets scattered over the canvas.
+     * @param storage Storage.
+     * @param count Count of widgets.
+     * @param zStep Distance between z-indices of neighbour widgets.
+     * @return Saved widgets.
+     */
+    static List<Widget> fill(IStorage storage, int count, int zStep) {
+        SplittableRandom random = new SplittableRandom(42);
+        List<Widget> widgets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Widget widget = newWidget(random);
+            widget.setZ(i * zStep);
+            widgets.add(widget);
+        }
+
+        storage.saveAll(widgets);
+
+        return widgets;
+    }
+
+    /**
+     * Returns new widget with random position and size.
+     * @param random Random.
+     */
+    static Widget newWidget(SplittableRandom random) {
+        Widget widget = new Widget();
+        widget.setX(random.nextInt(CANVAS_SIZE));
+        widget.setY(random.nextInt(CANVAS_SIZE));
+        widget.setWidth(1 + random.nextInt(50));
+        widget.setHeight(1 + random.nextInt(50));
+
+        return widget;
+    }
+}
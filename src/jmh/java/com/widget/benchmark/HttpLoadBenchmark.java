@@ -0,0 +1,81 @@
+package com.widget.benchmark;
+
+import com.widget.storage.abstraction.IStorage;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of the HTTP API in its execution modes: Tomcat thread pool, Tomcat with virtual threads
+ * and the reactive variant on Netty. Twice as many clients as threads of the Tomcat pool read pages of widgets
+ * over keep-alive connections, sample time mode reports percentiles of latency.
+ * Clients run in the same JVM as the server, so results are comparable only between modes.
+ * Virtual mode requires Java 21, reactive mode requires the reactive profile: -P benchmark,reactive.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(HttpLoadBenchmark.CLIENTS_COUNT)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class HttpLoadBenchmark {
+    static final int CLIENTS_COUNT = 400;
+
+    @Param({ "platform", "virtual", "reactive" })
+    private String mode;
+
+    private ConfigurableApplicationContext context;
+    private String baseUrl;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Keeps connection of every client alive, by default only 5 idle connections are kept.
+        System.setProperty("http.maxConnections", Integer.toString(CLIENTS_COUNT));
+
+        switch (mode) {
+            case "virtual":
+                context = BenchmarkContext.startServer("--widgets.execution.virtual-threads=true");
+                break;
+            case "reactive":
+                context = BenchmarkContext.startServer("--spring.main.web-application-type=reactive");
+                break;
+            default:
+                context = BenchmarkContext.startServer();
+        }
+        BenchmarkContext.fill(context.getBean(IStorage.class), 10_000, 1);
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int getWidgetsPage(ThreadState state) throws IOException {
+        URL url = new URL(baseUrl + "/widgets?perPage=10&page=" + state.random.nextInt(100));
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+
+        int length = 0;
+        try (InputStream input = connection.getInputStream()) {
+            for (int count = input.read(state.buffer); count != -1; count = input.read(state.buffer)) {
+                length += count;
+            }
+        }
+
+        return length;
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        private SplittableRandom random = new SplittableRandom();
+        private byte[] buffer = new byte[8192];
+    }
+}
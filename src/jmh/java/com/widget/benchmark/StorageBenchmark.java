@@ -0,0 +1,71 @@
+package com.widget.benchmark;
+
+import com.widget.service.index.WidgetZIndex;
+import com.widget.service.model.Widget;
+import com.widget.storage.abstraction.IStorage;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of storage operations. Run with -t to measure contention of several threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class StorageBenchmark {
+    @Param({ "1000", "100000", "1000000" })
+    private int widgetsCount;
+
+    private ConfigurableApplicationContext context;
+    private IStorage storage;
+    private List<Widget> widgets;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        storage = context.getBean(IStorage.class);
+        widgets = BenchmarkContext.fill(storage, widgetsCount, 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<Widget> findById(ThreadState state) {
+        return storage.findById(Widget.class, widgets.get(state.nextIndex(widgetsCount)).getId());
+    }
+
+    @Benchmark
+    public boolean exists(ThreadState state) {
+        return storage.exists(Widget.class, widgets.get(state.nextIndex(widgetsCount)).getId());
+    }
+
+    @Benchmark
+    public Widget save(ThreadState state) {
+        return storage.save(widgets.get(state.nextIndex(widgetsCount)));
+    }
+
+    @Benchmark
+    public List findAll() {
+        return storage.findAll(Widget.class, WidgetZIndex.Z_ORDER);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        private SplittableRandom random = new SplittableRandom();
+
+        int nextIndex(int bound) {
+            return random.nextInt(bound);
+        }
+    }
+}
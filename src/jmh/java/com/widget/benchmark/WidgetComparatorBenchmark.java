@@ -0,0 +1,73 @@
+package com.widget.benchmark;
+
+import com.widget.service.index.WidgetZIndex;
+import com.widget.service.model.Widget;
+import com.widget.service.service.WidgetService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of widget orders and predicates. Run with -prof gc to see allocations per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WidgetComparatorBenchmark {
+    @Param({ "10000" })
+    private int widgetsCount;
+
+    private Widget[] widgets;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        widgets = new Widget[widgetsCount];
+        for (int i = 0; i < widgetsCount; i++) {
+            Widget widget = BenchmarkContext.newWidget(random);
+            widget.setId(widget.generateNewId());
+            widget.setZ(random.nextInt(widgetsCount * 2) - widgetsCount);
+            widgets[i] = widget;
+        }
+    }
+
+    /**
+     * Compares neighbour widgets, so the measurement doesn't include copying of the array.
+     */
+    @Benchmark
+    public int compareByZ() {
+        int result = 0;
+        for (int i = 1; i < widgets.length; i++) {
+            result += WidgetZIndex.Z_ORDER.compare(widgets[i - 1], widgets[i]);
+        }
+
+        return result;
+    }
+
+    @Benchmark
+    public int compareByArea() {
+        int result = 0;
+        for (int i = 1; i < widgets.length; i++) {
+            result += WidgetService.AREA_ORDER.compare(widgets[i - 1], widgets[i]);
+        }
+
+        return result;
+    }
+
+    @Benchmark
+    public List<Widget> sortByArea() {
+        List<Widget> result = new ArrayList<>(widgets.length);
+        for (Widget widget : widgets) {
+            result.add(widget);
+        }
+        result.sort(WidgetService.AREA_ORDER);
+
+        return result;
+    }
+}
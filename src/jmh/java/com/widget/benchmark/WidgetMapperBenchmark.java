@@ -0,0 +1,79 @@
+package com.widget.benchmark;
+
+import com.widget.service.contract.WidgetRequest;
+import com.widget.service.contract.WidgetResponse;
+import com.widget.service.mapping.WidgetMapper;
+import com.widget.service.model.Widget;
+import org.modelmapper.ModelMapper;
+import org.modelmapper.TypeToken;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Type;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares hand-written widget mapper with reflective ModelMapper on a page of responses and a single request.
+ * Run with -prof gc to see allocations per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WidgetMapperBenchmark {
+    private static final Type RESPONSES_TYPE = new TypeToken<List<WidgetResponse>>() {}.getType();
+
+    @Param({ "500" })
+    private int pageSize;
+
+    private List<Widget> widgets;
+    private WidgetRequest widgetRequest;
+    private WidgetMapper widgetMapper = new WidgetMapper();
+    private ModelMapper modelMapper = new ModelMapper();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        modelMapper.getConfiguration().setSkipNullEnabled(true);
+
+        SplittableRandom random = new SplittableRandom(42);
+        widgets = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            Widget widget = BenchmarkContext.newWidget(random);
+            widget.setId(widget.generateNewId());
+            widget.setZ(i);
+            widget.setLastModified(ZonedDateTime.now());
+            widgets.add(widget);
+        }
+
+        widgetRequest = new WidgetRequest();
+        widgetRequest.setX(10);
+        widgetRequest.setY(20);
+        widgetRequest.setWidth(30.0);
+        widgetRequest.setHeight(40.0);
+    }
+
+    @Benchmark
+    public List<WidgetResponse> pageWithWidgetMapper() {
+        return widgetMapper.toResponses(widgets);
+    }
+
+    @Benchmark
+    public List<WidgetResponse> pageWithModelMapper() {
+        return modelMapper.map(widgets, RESPONSES_TYPE);
+    }
+
+    @Benchmark
+    public Widget requestWithWidgetMapper() {
+        return widgetMapper.toWidget(widgetRequest);
+    }
+
+    @Benchmark
+    public Widget requestWithModelMapper() {
+        return modelMapper.map(widgetRequest, Widget.class);
+    }
+}
@@ -0,0 +1,80 @@
+package com.widget.benchmark;
+
+import com.widget.service.model.Widget;
+import com.widget.service.model.WidgetFilter;
+import com.widget.service.service.WidgetService;
+import com.widget.storage.EntityNotFoundException;
+import com.widget.storage.abstraction.IStorage;
+import com.widget.storage.contract.PageRequest;
+import com.widget.storage.contract.PageResponse;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of widget service hot paths. Run with -t to measure contention of several threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class WidgetServiceBenchmark {
+    /**
+     * Side of filter rectangle, it covers 1% of the canvas.
+     */
+    private static final int FILTER_SIZE = BenchmarkContext.CANVAS_SIZE / 10;
+
+    @Param({ "1000", "100000", "1000000" })
+    private int widgetsCount;
+
+    private ConfigurableApplicationContext context;
+    private WidgetService widgetService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        widgetService = context.getBean(WidgetService.class);
+        BenchmarkContext.fill(context.getBean(IStorage.class), widgetsCount, 2);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public PageResponse getAllWidgets(ThreadState state) {
+        return widgetService.getAllWidgets(new PageRequest(state.random.nextInt(10), 10), null);
+    }
+
+    @Benchmark
+    public PageResponse getAllWidgetsWithFilter(ThreadState state) {
+        double x1 = state.random.nextInt(BenchmarkContext.CANVAS_SIZE - FILTER_SIZE),
+                y1 = state.random.nextInt(BenchmarkContext.CANVAS_SIZE - FILTER_SIZE);
+        WidgetFilter filter = new WidgetFilter(x1, y1, x1 + FILTER_SIZE, y1 + FILTER_SIZE);
+
+        return widgetService.getAllWidgets(new PageRequest(0, 10), filter);
+    }
+
+    /**
+     * Puts widget on z-index of existing one and removes it, so count of widgets stays the same.
+     */
+    @Benchmark
+    public Widget createWidgetWithZCollision(ThreadState state) throws EntityNotFoundException {
+        Widget widget = BenchmarkContext.newWidget(state.random);
+        widget.setZ(state.random.nextInt(widgetsCount) * 2);
+        widgetService.createWidget(widget);
+        widgetService.deleteWidget(widget.getId());
+
+        return widget;
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        private SplittableRandom random = new SplittableRandom();
+    }
+}
@@ -1,7 +1,9 @@
 package com.widget.service;
 
+import com.widget.service.index.ZIndexOverflowException;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -12,6 +14,7 @@ import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
 @ControllerAdvice
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class CustomExceptionHandler extends ResponseEntityExceptionHandler {
 
     /**
@@ -26,6 +29,14 @@ public class CustomExceptionHandler extends ResponseEntityExceptionHandler {
         return new ResponseEntity<>(new MessageException(ex.getMessage()), headers, HttpStatus.BAD_REQUEST);
     }
 
+    /**
+     * Custom handler for <see cref="ZIndexOverflowException"></see> exception.
+     */
+    @ExceptionHandler(ZIndexOverflowException.class)
+    protected ResponseEntity<Object> handleZIndexOverflow(ZIndexOverflowException ex) {
+        return new ResponseEntity<>(new MessageException(ex.getMessage()), HttpStatus.CONFLICT);
+    }
+
     @Data
     @AllArgsConstructor
     private static class MessageException {
@@ -1,19 +1,24 @@
 package com.widget.service;
 
+import com.widget.service.index.WidgetZIndex;
+import com.widget.service.index.ZIndexOverflowException;
 import com.widget.service.model.Widget;
 import com.widget.storage.abstraction.BaseEntity;
 import com.widget.storage.abstraction.IInterceptor;
-import com.widget.storage.abstraction.IStorage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.time.ZonedDateTime;
-import java.util.List;
 
+/**
+ * Stamps written widgets and puts widgets without z-index on the top.
+ * Writes which would move a widget over Integer.MAX_VALUE are rejected before anything is changed.
+ * Widgets overlapped by written widget are shifted up by the z-order index.
+ */
 @Component
 public class WidgetServiceInterceptor implements IInterceptor {
     @Autowired
-    IStorage storage;
+    WidgetZIndex zIndex;
 
     /**
      * {@inheritDoc}
@@ -24,10 +29,7 @@ public class WidgetServiceInterceptor implements IInterceptor {
             Widget widget = (Widget) entity;
             widget.setLastModified(ZonedDateTime.now());
 
-            if (widget.getZ() == null) {
-                Integer maxIndex = getWidgetsMaxZIndex();
-                widget.setZ(maxIndex == null ? 0 : maxIndex + 1);
-            }
+            placeZ(widget);
         }
     }
 
@@ -36,13 +38,7 @@ public class WidgetServiceInterceptor implements IInterceptor {
      */
     @Override
     public void afterCreate(BaseEntity entity) {
-        if (entity.getClass() == Widget.class) {
-            Widget widget = (Widget) entity;
 
-            if (getWidgetsWithSameZIndex(widget).size() > 0) {
-                incEqAndGreaterZIndices(widget);
-            }
-        }
     }
 
     /**
@@ -54,10 +50,7 @@ public class WidgetServiceInterceptor implements IInterceptor {
             Widget widget = (Widget) entity;
             widget.setLastModified(ZonedDateTime.now());
 
-            if (widget.getZ() == null) {
-                Integer maxIndex = getWidgetsMaxZIndex();
-                widget.setZ(maxIndex == null ? 0 : maxIndex + 1);
-            }
+            placeZ(widget);
         }
     }
 
@@ -66,13 +59,7 @@ public class WidgetServiceInterceptor implements IInterceptor {
      */
     @Override
     public void afterUpdate(BaseEntity entity) {
-        if (entity.getClass() == Widget.class) {
-            Widget widget = (Widget) entity;
 
-            if (getWidgetsWithSameZIndex(widget).size() > 0) {
-                incEqAndGreaterZIndices(widget);
-            }
-        }
     }
 
     /**
@@ -92,38 +79,27 @@ public class WidgetServiceInterceptor implements IInterceptor {
     }
 
     /**
-     * Returns max z-index for all widgets.
+     * Puts widget without z-index on the top and checks that widgets shifted by it stay within int range.
+     * @param widget Written widget.
+     * @throws ZIndexOverflowException Widget or some shifted widget would exceed the max z-index.
      */
-    private Integer getWidgetsMaxZIndex() {
-        List<Widget> widgets = storage.findAll(Widget.class, null);
-        return widgets
-                .stream()
-                .map(x -> x.getZ())
-                .max(Integer::compare)
-                .orElse(null);
-    }
-
-    /**
-     * Returns widgets with the same z-index.
-     * @param widget Widget with z-index to check.
-     */
-    private List<Widget> getWidgetsWithSameZIndex(Widget widget) {
-        return storage.findAll(
-                Widget.class,
-                x -> x.getZ().equals(widget.getZ()) && !x.getId().equals(widget.getId()),
-                null);
+    private void placeZ(Widget widget) {
+        if (!widget.hasZ()) {
+            Integer maxIndex = getWidgetsMaxZIndex();
+            if (maxIndex != null && maxIndex == Integer.MAX_VALUE) {
+                throw new ZIndexOverflowException();
+            }
+            widget.setZ(maxIndex == null ? 0 : maxIndex + 1);
+        }
+        else if (!zIndex.canAdd(widget)) {
+            throw new ZIndexOverflowException();
+        }
     }
 
     /**
-     * Increments z-indices for all widgets that have greater z-index than z-index of passed widget.
-     * @param widget Widget.
+     * Returns max z-index for all widgets.
      */
-    private void incEqAndGreaterZIndices(Widget widget) {
-        List<Widget> widgets = storage.findAll(
-                Widget.class,
-                x -> x.getZ().equals(widget.getZ()) && !x.getId().equals(widget.getId()),
-                null);
-        widgets.forEach(x -> x.setZ(x.getZ() + 1));
-        storage.saveAll(widgets);
+    private Integer getWidgetsMaxZIndex() {
+        return zIndex.getMaxZ();
     }
 }
@@ -0,0 +1,282 @@
+package com.widget.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.widget.service.model.Widget;
+import com.widget.service.model.WidgetFilter;
+import com.widget.storage.abstraction.BaseEntity;
+import com.widget.storage.abstraction.IInterceptor;
+import com.widget.storage.abstraction.IStorage;
+import com.widget.storage.contract.PageRequest;
+import com.widget.storage.contract.PageResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.EqualsAndHashCode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache of widget pages bounded by the total count of cached records.
+ * Write of widget makes stale pages without filter and pages whose filter contains the widget before or after
+ * the write. Pages are tagged with the count of writes before their load instead of being evicted, so a write costs
+ * one pass over distinct filters of cached pages rather than over all cached pages, and pages without filter
+ * are made stale by the increment of the count alone. Stale pages are dropped when they are read or evicted by size.
+ * Pages loaded concurrently with a write which makes them stale are tagged before the write, so they are not served.
+ * Pages hold stored widgets rather than responses, z-indices are read when pages are mapped,
+ * so widgets shifted up by a write don't make pages stale.
+ */
+@Component
+public class WidgetPageCache implements IInterceptor {
+    @Autowired
+    private IStorage storage;
+
+    private final Cache<Key, CachedPage> pages;
+    private final AtomicLong writesCount = new AtomicLong();
+    private final ConcurrentHashMap<UUID, Widget> widgetsBeforeUpdate = new ConcurrentHashMap<>();
+
+    // Filters of cached pages and pages being loaded, which are counted to drop filters without pages.
+    private final ConcurrentHashMap<Area, AreaState> areas = new ConcurrentHashMap<>();
+
+    /**
+     * Creates cache.
+     * @param maximumRecords Maximum count of cached records.
+     * @param meterRegistry Registry of hit, miss and eviction metrics.
+     */
+    @Autowired
+    public WidgetPageCache(
+            @Value("${widgets.cache.maximum-records:100000}") long maximumRecords,
+            MeterRegistry meterRegistry) {
+        pages = Caffeine.newBuilder()
+                .maximumWeight(maximumRecords)
+                .weigher((Key key, CachedPage page) -> page.page.getRecords().size() + 1)
+                .executor(Runnable::run)
+                .removalListener((Key key, CachedPage page, RemovalCause cause) -> release(key.area))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, pages, "widgetPages");
+    }
+
+    /**
+     * Returns cached page or loads it. Pages read by cursor or from snapshot are not cached.
+     * @param pageRequest Page request.
+     * @param filter Widgets filter.
+     * @param loader Loader of the page.
+     */
+    public PageResponse get(PageRequest pageRequest, WidgetFilter filter, Supplier<PageResponse> loader) {
+        if (pageRequest.getCursor() != null || pageRequest.getSnapshot() != null) {
+            return loader.get();
+        }
+
+        Key key = new Key(pageRequest, filter);
+        CachedPage cachedPage = pages.getIfPresent(key);
+        if (cachedPage != null) {
+            if (isFresh(key, cachedPage)) {
+                return cachedPage.page;
+            }
+            pages.asMap().remove(key, cachedPage);
+        }
+
+        // Filter is registered before the count of writes is read, so writes during the load mark it.
+        acquire(key.area);
+        boolean isCached = false;
+        try {
+            long writesCountBeforeLoad = writesCount.get();
+            PageResponse page = loader.get();
+            pages.put(key, new CachedPage(page, writesCountBeforeLoad));
+            isCached = true;
+
+            return page;
+        }
+        finally {
+            if (!isCached) {
+                release(key.area);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void beforeCreate(BaseEntity entity) {
+
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterCreate(BaseEntity entity) {
+        if (entity.getClass() == Widget.class) {
+            invalidate((Widget) entity, null);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void beforeUpdate(BaseEntity entity) {
+        if (entity.getClass() == Widget.class) {
+            storage.findById(Widget.class, ((Widget) entity).getId())
+                    .ifPresent(x -> widgetsBeforeUpdate.put(x.getId(), x));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterUpdate(BaseEntity entity) {
+        if (entity.getClass() == Widget.class) {
+            Widget widget = (Widget) entity;
+            invalidate(widget, widgetsBeforeUpdate.remove(widget.getId()));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void beforeDelete(BaseEntity entity) {
+
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterDelete(BaseEntity entity) {
+        if (entity.getClass() == Widget.class) {
+            invalidate((Widget) entity, null);
+        }
+    }
+
+    /**
+     * Makes stale pages which may contain the widget. Executes under the lock of widget type.
+     * @param widget Written widget.
+     * @param widgetBeforeUpdate Previous state of updated widget or null.
+     */
+    private void invalidate(Widget widget, Widget widgetBeforeUpdate) {
+        long count = writesCount.incrementAndGet();
+        areas.forEach((area, state) -> {
+            if (area.contains(widget) || (widgetBeforeUpdate != null && area.contains(widgetBeforeUpdate))) {
+                state.invalidatedAt = count;
+            }
+        });
+    }
+
+    /**
+     * Checks whether page was loaded after the last write which may change it.
+     * @param key Page key.
+     * @param cachedPage Cached page.
+     */
+    private boolean isFresh(Key key, CachedPage cachedPage) {
+        if (key.area == null) {
+            return cachedPage.writesCount == writesCount.get();
+        }
+
+        AreaState state = areas.get(key.area);
+        return state != null && cachedPage.writesCount >= state.invalidatedAt;
+    }
+
+    /**
+     * Counts page of filter which is loaded or cached.
+     * @param area Filter or null.
+     */
+    private void acquire(Area area) {
+        if (area != null) {
+            areas.compute(area, (x, state) -> {
+                AreaState result = state == null ? new AreaState() : state;
+                result.pagesCount++;
+
+                return result;
+            });
+        }
+    }
+
+    /**
+     * Uncounts page of filter which is evicted or not cached, filter without pages is dropped.
+     * @param area Filter or null.
+     */
+    private void release(Area area) {
+        if (area != null) {
+            areas.computeIfPresent(area, (x, state) -> --state.pagesCount == 0 ? null : state);
+        }
+    }
+
+    /**
+     * Key of cached page.
+     */
+    @EqualsAndHashCode
+    private static class Key {
+        private final int page;
+        private final int perPage;
+        private final Area area;
+
+        private Key(PageRequest pageRequest, WidgetFilter filter) {
+            page = pageRequest.getPage();
+            perPage = pageRequest.getPerPage();
+            area = filter == null ? null : new Area(filter);
+        }
+    }
+
+    /**
+     * Rectangle of widgets filter.
+     */
+    @EqualsAndHashCode
+    private static class Area {
+        private final Double x1;
+        private final Double y1;
+        private final Double x2;
+        private final Double y2;
+
+        private Area(WidgetFilter filter) {
+            x1 = filter.getX1();
+            y1 = filter.getY1();
+            x2 = filter.getX2();
+            y2 = filter.getY2();
+        }
+
+        /**
+         * Checks whether the widget falls into the rectangle.
+         * @param widget Widget.
+         */
+        private boolean contains(Widget widget) {
+            return x1 == null
+                    || (widget.getX() - widget.getWidth() / 2 >= x1
+                        && widget.getY() - widget.getHeight() / 2 >= y1
+                        && widget.getX() + widget.getWidth() / 2 <= x2
+                        && widget.getY() + widget.getHeight() / 2 <= y2);
+        }
+    }
+
+    /**
+     * Count of the latest write which made pages of filter stale and count of its cached and loaded pages.
+     * The count of pages is changed only inside of compute.
+     */
+    private static class AreaState {
+        private volatile long invalidatedAt;
+        private int pagesCount;
+    }
+
+    /**
+     * Page with the count of writes before its load.
+     */
+    private static class CachedPage {
+        private final PageResponse page;
+        private final long writesCount;
+
+        private CachedPage(PageResponse page, long writesCount) {
+            this.page = page;
+            this.writesCount = writesCount;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.widget.service.configuration;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs requests of the servlet variant on virtual threads, which is enabled by widgets.execution.virtual-threads=true.
+ * Every request gets its own virtual thread instead of a thread of the Tomcat pool, so count of concurrent requests
+ * is limited by server.tomcat.max-connections rather than by server.tomcat.max-threads.
+ * Streamed responses of async requests run on virtual threads too.
+ * The service is built for Java 8, so virtual threads are created by reflection and the mode requires Java 21
+ * at runtime. Writes of the storage and the journal wait on ReentrantLock, which unmounts virtual threads
+ * instead of pinning their carrier threads.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "widgets.execution.virtual-threads", havingValue = "true")
+public class VirtualThreadConfig implements WebMvcConfigurer {
+    private final ExecutorService executor = newVirtualThreadExecutor("http-virtual-");
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(new TaskExecutorAdapter(executor));
+    }
+
+    /**
+     * Stops accepting requests and waits for running ones, which are interrupted if they don't finish in time.
+     */
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates executor which starts new virtual thread for every task.
+     * @param namePrefix Prefix of names of threads, which are numbered from zero.
+     * @throws IllegalStateException Runtime doesn't support virtual threads.
+     */
+    static ExecutorService newVirtualThreadExecutor(String namePrefix) {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            ThreadFactory threadFactory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+
+            return (ExecutorService) Executors.class
+                    .getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, threadFactory);
+        }
+        catch (ClassNotFoundException | NoSuchMethodException ex) {
+            throw new IllegalStateException(
+                    "Virtual threads require Java 21 or later, running on Java " + System.getProperty("java.version"),
+                    ex);
+        }
+        catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Failed to create virtual thread executor", ex);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.widget.service.contract;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.UUID;
+
+/**
+ * Result of single item of bulk request.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class WidgetBulkResult {
+    private UUID id;
+    private int status;
+    private WidgetResponse widget;
+    private String message;
+}
@@ -0,0 +1,14 @@
+package com.widget.service.contract;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.validation.constraints.NotNull;
+import java.util.UUID;
+
+@Getter
+@Setter
+public class WidgetBulkUpdateRequest extends WidgetRequest {
+    @NotNull(message = "Identifier must be present.")
+    private UUID id;
+}
@@ -0,0 +1,38 @@
+package com.widget.service.contract;
+
+import com.widget.service.model.ZShift;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Coalesced changes of widgets pushed to the change feed.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+public class WidgetChanges {
+    /**
+     * Version of widgets which includes the changes, clients resume the feed from it.
+     */
+    private long version;
+
+    /**
+     * Current state of created and updated widgets.
+     */
+    private List<WidgetResponse> updated;
+
+    /**
+     * Identifiers of deleted widgets and widgets which left the viewport.
+     */
+    private List<UUID> deleted;
+
+    /**
+     * Shifts of z-indices in the order they were made, clients apply them to widgets they have
+     * before replacing updated widgets and removing deleted ones.
+     */
+    private List<ZShift> shifted;
+}
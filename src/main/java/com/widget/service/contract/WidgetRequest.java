@@ -1,8 +1,10 @@
 package com.widget.service.contract;
 
+import com.widget.service.model.Widget;
 import lombok.Getter;
 import lombok.Setter;
 
+import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
@@ -15,6 +17,8 @@ public class WidgetRequest {
     @NotNull(message = "Y coordinate must be present.")
     private Integer y;
 
+    @Min(Widget.MIN_Z)
+    @Max(Widget.MAX_Z)
     private Integer z = null;
 
     @NotNull(message = "Width must be present.")
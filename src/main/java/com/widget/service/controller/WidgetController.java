@@ -1,79 +1,183 @@
 package com.widget.service.controller;
 
 import com.widget.storage.contract.PageRequest;
+import com.widget.service.cache.WidgetPageCache;
+import com.widget.service.contract.WidgetBulkResult;
+import com.widget.service.contract.WidgetBulkUpdateRequest;
 import com.widget.service.contract.WidgetQuery;
 import com.widget.service.contract.WidgetRequest;
-import com.widget.service.contract.WidgetResponse;
+import com.widget.service.feed.WidgetChangeFeed;
 import com.widget.service.model.Widget;
+import com.widget.service.mapping.WidgetMapper;
 import com.widget.service.model.WidgetFilter;
 import com.widget.service.service.WidgetService;
 import com.widget.storage.EntityNotFoundException;
 import com.widget.storage.contract.PageResponse;
-import org.modelmapper.ModelMapper;
-import org.modelmapper.TypeToken;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
-import java.lang.reflect.Type;
-import java.util.List;
-import java.util.UUID;
+import javax.validation.Validator;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/widgets")
+@Timed(value = "widgets.requests", histogram = true, percentiles = { 0.5, 0.99 })
 public class WidgetController {
-    private ModelMapper mapper;
+    private WidgetMapper mapper;
     private WidgetService widgetService;
+    private WidgetPageCache pageCache;
+    private WidgetChangeFeed changeFeed;
+    private Validator validator;
+    private ObjectMapper objectMapper;
+
+    // Versions of widgets start over on restart, so tags of the previous run must not match.
+    private final String versionsEpoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
 
     @Autowired
-    public WidgetController(WidgetService widgetService, ModelMapper mapper) {
+    public WidgetController(
+            WidgetService widgetService,
+            WidgetPageCache pageCache,
+            WidgetChangeFeed changeFeed,
+            WidgetMapper mapper,
+            Validator validator,
+            ObjectMapper objectMapper) {
         this.widgetService = widgetService;
+        this.pageCache = pageCache;
+        this.changeFeed = changeFeed;
         this.mapper = mapper;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
     }
 
     /**
      * Handles GET request to /widgets.
+     * Page is tagged by version of widgets, request with matching If-None-Match is answered
+     * with 304 without reading widgets.
      * @return All widgets.
      */
     @GetMapping
-    public ResponseEntity<?> getAll(@Valid PageRequest pageRequest, WidgetQuery widgetQuery) {
-        PageResponse<Widget> pagedWidgets = null;
+    public ResponseEntity<?> getAll(@Valid PageRequest pageRequest, WidgetQuery widgetQuery, WebRequest webRequest) {
+        // Version is read before the page, so the tag is never newer than the page.
+        String eTag = versionsEpoch + "-" + widgetService.getWidgetsVersion();
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+
         WidgetFilter widgetFilter = null;
 
         if (!widgetQuery.isEmpty()) {
             if (widgetQuery.isValid()) {
-                widgetFilter = mapper.map(widgetQuery, WidgetFilter.class);
-                pagedWidgets = widgetService.getAllWidgets(pageRequest, widgetFilter);
+                widgetFilter = mapper.toFilter(widgetQuery);
             }
             else {
                 return new ResponseEntity(HttpStatus.BAD_REQUEST);
             }
         }
-        else {
-            pagedWidgets = widgetService.getAllWidgets(pageRequest, null);
+
+        WidgetFilter filter = widgetFilter;
+        try {
+            PageResponse page = pageCache.get(pageRequest, filter, () -> widgetService.getAllWidgets(pageRequest, filter));
+            return ResponseEntity.ok(mapper.toResponsePage(page));
         }
+        catch (IllegalArgumentException ex) {
+            return new ResponseEntity(HttpStatus.BAD_REQUEST);
+        }
+    }
 
-        Type targetListType = new TypeToken<List<WidgetResponse>>() {}.getType();
-        pagedWidgets.setRecords(mapper.map(pagedWidgets.getRecords(), targetListType));
+    /**
+     * Handles GET request to /widgets/export.
+     * Widgets are written to the response one by one, so responses of all widgets are never buffered.
+     * @return JSON array of all widgets.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(WidgetQuery widgetQuery) {
+        WidgetFilter widgetFilter = null;
 
-        return ResponseEntity.ok(pagedWidgets);
+        if (!widgetQuery.isEmpty()) {
+            if (widgetQuery.isValid()) {
+                widgetFilter = mapper.toFilter(widgetQuery);
+            }
+            else {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+        }
+
+        Iterable<Widget> widgets = widgetService.exportWidgets(widgetFilter);
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.writeStartArray();
+                for (Widget widget : widgets) {
+                    mapper.writeResponse(widget, generator);
+                }
+                generator.writeEndArray();
+            }
+        };
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Handles GET request to /widgets/stream.
+     * Opens feed of changes of widgets inside of the query rectangle, or of all widgets without query.
+     * @param since Version of widgets to resume from, Last-Event-ID header is used when it's absent.
+     * @return Server-sent events of changes.
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream(
+            WidgetQuery widgetQuery,
+            @RequestParam(name = "since", required = false) Long since,
+            @RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId) {
+        WidgetFilter widgetFilter = null;
+
+        if (!widgetQuery.isEmpty()) {
+            if (widgetQuery.isValid()) {
+                widgetFilter = mapper.toFilter(widgetQuery);
+            }
+            else {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+        }
+
+        return ResponseEntity.ok(changeFeed.subscribe(widgetFilter, since != null ? since : lastEventId));
     }
 
     /**
      * Handles GET request to /widgets/{id}.
+     * Widget is tagged by its modification time, which follows shifts of its z-index, and by its z-index,
+     * request with matching If-None-Match or If-Modified-Since is answered with 304.
      * @param id Identifier of widget.
      * @return Widget by its identifier.
      */
     @GetMapping("/{id}")
-    public ResponseEntity<?> getById(@PathVariable("id") UUID id) {
+    public ResponseEntity<?> getById(@PathVariable("id") UUID id, WebRequest webRequest) {
         Widget widget = widgetService.getWidgetById(id);
         if (widget == null) {
             return new ResponseEntity(HttpStatus.NOT_FOUND);
         }
 
-        return ResponseEntity.ok(mapper.map(widget, WidgetResponse.class));
+        Instant lastModified = widget.getLastModified().toInstant();
+        String eTag = lastModified.getEpochSecond() + "." + lastModified.getNano() + "." + widget.getZ();
+        if (webRequest.checkNotModified(eTag, lastModified.toEpochMilli())) {
+            return null;
+        }
+
+        return ResponseEntity.ok(mapper.toResponse(widget));
     }
 
     /**
@@ -87,10 +191,10 @@ public class WidgetController {
             return new ResponseEntity(HttpStatus.BAD_REQUEST);
         }
 
-        Widget widget = mapper.map(widgetRequest, Widget.class);
+        Widget widget = mapper.toWidget(widgetRequest);
         widget = widgetService.createWidget(widget);
 
-        return new ResponseEntity(mapper.map(widget, WidgetResponse.class), HttpStatus.CREATED);
+        return new ResponseEntity(mapper.toResponse(widget), HttpStatus.CREATED);
     }
 
     /**
@@ -106,11 +210,11 @@ public class WidgetController {
         }
 
         try {
-            Widget widget = mapper.map(widgetRequest, Widget.class);
+            Widget widget = mapper.toWidget(widgetRequest);
             widget.setId(id);
             widget = widgetService.modifyWidget(widget);
 
-            return ResponseEntity.ok(mapper.map(widget, WidgetResponse.class));
+            return ResponseEntity.ok(mapper.toResponse(widget));
         }
         catch(EntityNotFoundException ex) {
             return new ResponseEntity(HttpStatus.NOT_FOUND);
@@ -131,4 +235,144 @@ public class WidgetController {
             return new ResponseEntity(HttpStatus.NOT_FOUND);
         }
     }
+
+    /**
+     * Handles POST request to /widgets/bulk.
+     * Widgets which would move some widget over the max z-index are answered with 409, the rest are created.
+     * @param widgetRequests Request bodies for widgets to create.
+     * @return Result for every widget in the order of request.
+     */
+    @PostMapping("/bulk")
+    public ResponseEntity<?> postAll(@RequestBody List<WidgetRequest> widgetRequests) {
+        if (widgetRequests == null) {
+            return new ResponseEntity(HttpStatus.BAD_REQUEST);
+        }
+
+        WidgetBulkResult[] results = new WidgetBulkResult[widgetRequests.size()];
+        List<Widget> widgets = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < widgetRequests.size(); i++) {
+            String violations = validate(widgetRequests.get(i));
+            if (violations != null) {
+                results[i] = new WidgetBulkResult(null, HttpStatus.BAD_REQUEST.value(), null, violations);
+            }
+            else {
+                widgets.add(mapper.toWidget(widgetRequests.get(i)));
+                positions.add(i);
+            }
+        }
+
+        widgetService.createWidgets(widgets, (ex, position) -> results[positions.get(position)] =
+                new WidgetBulkResult(null, HttpStatus.CONFLICT.value(), null, ex.getMessage()));
+        for (int i = 0; i < widgets.size(); i++) {
+            Widget widget = widgets.get(i);
+            if (results[positions.get(i)] == null) {
+                results[positions.get(i)] = new WidgetBulkResult(
+                        widget.getId(),
+                        HttpStatus.CREATED.value(),
+                        mapper.toResponse(widget),
+                        null);
+            }
+        }
+
+        return ResponseEntity.ok(results);
+    }
+
+    /**
+     * Handles PUT request to /widgets/bulk.
+     * Widgets which would move some widget over the max z-index are answered with 409, the rest are updated.
+     * @param widgetRequests Request bodies for widgets to update.
+     * @return Result for every widget in the order of request.
+     */
+    @PutMapping("/bulk")
+    public ResponseEntity<?> putAll(@RequestBody List<WidgetBulkUpdateRequest> widgetRequests) {
+        if (widgetRequests == null) {
+            return new ResponseEntity(HttpStatus.BAD_REQUEST);
+        }
+
+        WidgetBulkResult[] results = new WidgetBulkResult[widgetRequests.size()];
+        List<Widget> widgets = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < widgetRequests.size(); i++) {
+            WidgetBulkUpdateRequest widgetRequest = widgetRequests.get(i);
+            String violations = validate(widgetRequest);
+            if (violations != null) {
+                results[i] = new WidgetBulkResult(
+                        widgetRequest.getId(),
+                        HttpStatus.BAD_REQUEST.value(),
+                        null,
+                        violations);
+            }
+            else {
+                Widget widget = mapper.toWidget(widgetRequest);
+                widget.setId(widgetRequest.getId());
+                widgets.add(widget);
+                positions.add(i);
+            }
+        }
+
+        List<Widget> savedWidgets = widgetService.modifyWidgets(widgets, (ex, position) ->
+                results[positions.get(position)] = new WidgetBulkResult(
+                        widgets.get(position).getId(),
+                        HttpStatus.CONFLICT.value(),
+                        null,
+                        ex.getMessage()));
+        for (int i = 0; i < widgets.size(); i++) {
+            if (results[positions.get(i)] != null) {
+                continue;
+            }
+
+            Widget widget = savedWidgets.get(i);
+            results[positions.get(i)] = widget == null
+                    ? new WidgetBulkResult(widgets.get(i).getId(), HttpStatus.NOT_FOUND.value(), null, null)
+                    : new WidgetBulkResult(
+                        widget.getId(),
+                        HttpStatus.OK.value(),
+                        mapper.toResponse(widget),
+                        null);
+        }
+
+        return ResponseEntity.ok(results);
+    }
+
+    /**
+     * Handles DELETE request to /widgets/bulk.
+     * Repeated identifier is answered with 404, since the widget is deleted by its first occurrence.
+     * @param ids Identifiers of widgets.
+     * @return Result for every identifier in the order of request.
+     */
+    @DeleteMapping("/bulk")
+    public ResponseEntity<?> deleteAll(@RequestBody List<UUID> ids) {
+        if (ids == null) {
+            return new ResponseEntity(HttpStatus.BAD_REQUEST);
+        }
+
+        Set<UUID> deletedIds = new HashSet<>(widgetService.deleteWidgets(ids));
+        List<WidgetBulkResult> results = new ArrayList<>(ids.size());
+        for (UUID id : ids) {
+            results.add(new WidgetBulkResult(
+                    id,
+                    deletedIds.remove(id) ? HttpStatus.OK.value() : HttpStatus.NOT_FOUND.value(),
+                    null,
+                    null));
+        }
+
+        return ResponseEntity.ok(results);
+    }
+
+    /**
+     * Validates request body of single widget.
+     * @param widgetRequest Request body.
+     * @return Violation messages or null if request is valid.
+     */
+    private String validate(WidgetRequest widgetRequest) {
+        if (widgetRequest == null) {
+            return "Widget must be present.";
+        }
+
+        Set<ConstraintViolation<WidgetRequest>> violations = validator.validate(widgetRequest);
+        return violations.isEmpty()
+                ? null
+                : violations.stream().map(ConstraintViolation::getMessage).collect(Collectors.joining(" "));
+    }
 }
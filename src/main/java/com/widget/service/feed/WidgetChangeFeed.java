@@ -0,0 +1,413 @@
+package com.widget.service.feed;
+
+import com.widget.service.contract.WidgetChanges;
+import com.widget.service.contract.WidgetResponse;
+import com.widget.service.mapping.WidgetMapper;
+import com.widget.service.model.Widget;
+import com.widget.service.model.WidgetFilter;
+import com.widget.service.model.ZShift;
+import com.widget.storage.abstraction.IEventListener;
+import com.widget.storage.abstraction.IStorage;
+import com.widget.storage.contract.EntityEvent;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Feed of widget changes pushed to clients as server-sent events.
+ * Every batch of storage events is coalesced into a single "changes" event per client. Widgets shifted up
+ * by a write are not listed, the event carries ranges of shifted z-indices instead, so its size doesn't depend
+ * on count of shifted widgets. Events are identified by version of widgets,
+ * clients which reconnect with the last seen version get changes they missed while these are retained,
+ * otherwise they get "reset" event and have to reload widgets.
+ * Events are queued to every client under the lock of the feed and sent by sender threads outside of it,
+ * one client at a time by one thread, so slow client delays neither writes nor other clients.
+ * Sender threads and clients waiting for them are bounded. Client whose queue overflows, or which can't get
+ * a sender because all of them are busy and the waiting clients are too many, is disconnected and resumes the feed
+ * when it reconnects. Responses of disconnected clients are completed outside of the lock of the feed.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class WidgetChangeFeed implements IEventListener, SmartInitializingSingleton {
+    private static final String READY_EVENT = "ready";
+    private static final String CHANGES_EVENT = "changes";
+    private static final String RESET_EVENT = "reset";
+
+    @Autowired
+    private IStorage storage;
+
+    @Autowired
+    private WidgetMapper mapper;
+
+    @Value("${widgets.feed.history-size:10000}")
+    private int historySize;
+
+    @Value("${widgets.feed.timeout:1800000}")
+    private long timeout;
+
+    @Value("${widgets.feed.queue-size:256}")
+    private int queueSize;
+
+    @Value("${widgets.feed.sender-threads:16}")
+    private int senderThreads;
+
+    @Value("${widgets.feed.sender-queue-size:1024}")
+    private int senderQueueSize;
+
+    // Guards history, version and registration of subscribers, so subscribers don't miss events.
+    private final ReentrantLock lock = new ReentrantLock();
+    private ArrayDeque<EntityEvent> history = new ArrayDeque<>();
+    private List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private long version;
+
+    private ThreadPoolExecutor sender;
+
+    /**
+     * Creates sender threads, which are started on demand and stopped when idle.
+     * Client whose sending is rejected by them is disconnected.
+     */
+    @PostConstruct
+    public void init() {
+        sender = new ThreadPoolExecutor(
+                senderThreads,
+                senderThreads,
+                60,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(senderQueueSize),
+                x -> {
+                    Thread thread = new Thread(x, "widget-feed-sender");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (task, executor) -> ((Subscriber) task).detach());
+        sender.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Starts the feed from the current version of widgets, which is restored by the storage on startup.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        lock.lock();
+        try {
+            version = storage.getVersion(Widget.class);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops sender threads.
+     */
+    @PreDestroy
+    public void destroy() {
+        sender.shutdownNow();
+    }
+
+    /**
+     * Subscribes client to changes of widgets.
+     * @param widgetFilter Viewport of client, may be null.
+     * @param since Version of widgets client has seen, may be null.
+     * @return Emitter of events.
+     */
+    public SseEmitter subscribe(WidgetFilter widgetFilter, Long since) {
+        Subscriber subscriber = new Subscriber(new SseEmitter(timeout), widgetFilter);
+        subscriber.emitter.onCompletion(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onTimeout(() -> subscribers.remove(subscriber));
+
+        boolean connected;
+        lock.lock();
+        try {
+            if (since == null || since == version) {
+                connected = subscriber.offer(new Message(READY_EVENT, version, version));
+            }
+            else if (since < version && !history.isEmpty() && history.getFirst().getVersion() <= since + 1) {
+                List<EntityEvent> missedEvents = new ArrayList<>();
+                Iterator<EntityEvent> iterator = history.descendingIterator();
+                while (iterator.hasNext()) {
+                    EntityEvent event = iterator.next();
+                    if (event.getVersion() <= since) {
+                        break;
+                    }
+                    missedEvents.add(event);
+                }
+                Collections.reverse(missedEvents);
+
+                WidgetChanges missedChanges = subscriber.render(coalesce(missedEvents), version);
+                connected = subscriber.offer(missedChanges == null
+                        ? new Message(READY_EVENT, version, version)
+                        : new Message(CHANGES_EVENT, version, missedChanges));
+            }
+            else {
+                connected = subscriber.offer(new Message(RESET_EVENT, version, version));
+            }
+            if (connected) {
+                subscribers.add(subscriber);
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+
+        if (!connected) {
+            subscriber.emitter.complete();
+        }
+
+        return subscriber.emitter;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onEvents(List<EntityEvent> events) {
+        List<Subscriber> disconnected = new ArrayList<>();
+        lock.lock();
+        try {
+            List<EntityEvent> changes = new ArrayList<>();
+            boolean reset = false;
+            for (EntityEvent event : events) {
+                if (event.getType() != Widget.class) {
+                    continue;
+                }
+
+                // Gap in versions means that events were dropped, so retained changes are incomplete.
+                if (event.getOperation() == EntityEvent.Operation.DELETE_ALL || event.getVersion() != version + 1) {
+                    history.clear();
+                    changes.clear();
+                    reset = true;
+                }
+                else {
+                    history.addLast(event);
+                    if (history.size() > historySize) {
+                        history.removeFirst();
+                    }
+                    changes.add(event);
+                }
+                version = event.getVersion();
+            }
+
+            Message message = reset
+                    ? new Message(RESET_EVENT, version, version)
+                    : changes.isEmpty() ? null : new Message(CHANGES_EVENT, version, coalesce(changes));
+            if (message != null) {
+                for (Subscriber subscriber : subscribers) {
+                    if (!subscriber.offer(message)) {
+                        disconnected.add(subscriber);
+                    }
+                }
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+
+        disconnected.forEach(x -> x.emitter.complete());
+    }
+
+    /**
+     * Merges events of the same widget into the pair of its first and last events and collects shifts.
+     * @param events Events in the order of writes.
+     */
+    private Changes coalesce(List<EntityEvent> events) {
+        Changes result = new Changes();
+        for (EntityEvent event : events) {
+            for (Object indexChange : event.getIndexChanges()) {
+                if (indexChange instanceof ZShift) {
+                    result.shifts.add((ZShift) indexChange);
+                }
+            }
+
+            result.widgets.computeIfAbsent(event.getId(), x -> new EntityEvent[] { event, event })[1] = event;
+            result.shiftsBefore.put(event.getId(), result.shifts.size());
+        }
+
+        return result;
+    }
+
+    /**
+     * Coalesced events of widgets.
+     */
+    private static class Changes {
+        // Pairs of the first and the last event of every changed widget.
+        final Map<UUID, EntityEvent[]> widgets = new LinkedHashMap<>();
+        final List<ZShift> shifts = new ArrayList<>();
+        // Count of shifts made before the last write of every widget, the rest shifted it after.
+        final Map<UUID, Integer> shiftsBefore = new HashMap<>();
+
+        /**
+         * Returns z-index of widget after all shifts.
+         * @param widget The last state of written widget.
+         */
+        int getZ(Widget widget) {
+            int z = widget.getZ();
+            for (int i = shiftsBefore.get(widget.getId()); i < shifts.size(); i++) {
+                z = shifts.get(i).apply(z);
+            }
+
+            return z;
+        }
+    }
+
+    /**
+     * Event queued to clients. Data of changes event is rendered for every client when it's sent.
+     */
+    private static class Message {
+        final String name;
+        final long version;
+        final Object data;
+
+        Message(String name, long version, Object data) {
+            this.name = name;
+            this.version = version;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Client of the feed, which is run by sender thread to send its queued events.
+     */
+    private class Subscriber implements Runnable {
+        final SseEmitter emitter;
+        final WidgetFilter widgetFilter;
+        final BlockingQueue<Message> messages = new ArrayBlockingQueue<>(queueSize);
+        final AtomicBoolean draining = new AtomicBoolean();
+        volatile boolean detached;
+
+        Subscriber(SseEmitter emitter, WidgetFilter widgetFilter) {
+            this.emitter = emitter;
+            this.widgetFilter = widgetFilter;
+        }
+
+        /**
+         * Queues event and starts sending when client has no sender. Client with full queue or rejected by senders
+         * is detached from the feed, and its caller completes its response.
+         * @param message Event.
+         * @return Whether client is still connected.
+         */
+        boolean offer(Message message) {
+            if (!messages.offer(message)) {
+                detach();
+                return false;
+            }
+
+            if (draining.compareAndSet(false, true)) {
+                sender.execute(this);
+            }
+
+            return !detached;
+        }
+
+        /**
+         * Sends queued events until the queue is empty. Events queued while the sender stops are taken by the next pass.
+         */
+        @Override
+        public void run() {
+            do {
+                for (Message message = messages.poll(); message != null; message = messages.poll()) {
+                    if (!send(message)) {
+                        return;
+                    }
+                }
+                draining.set(false);
+            } while (!messages.isEmpty() && draining.compareAndSet(false, true));
+        }
+
+        /**
+         * Returns changes of widgets which are or were in the viewport and all shifts,
+         * which may move widgets of the viewport.
+         * @param changes Coalesced changes.
+         * @param version Version of widgets which includes the changes.
+         * @return Changes or null if none of changes is visible to the client.
+         */
+        WidgetChanges render(Changes changes, long version) {
+            List<WidgetResponse> updated = new ArrayList<>();
+            List<UUID> deleted = new ArrayList<>();
+            for (EntityEvent[] change : changes.widgets.values()) {
+                Widget before = (Widget) change[0].getPreviousEntity();
+                Widget after = (Widget) change[1].getEntity();
+                if (after != null && isVisible(after)) {
+                    WidgetResponse response = mapper.toResponse(after);
+                    response.setZ(changes.getZ(after));
+                    updated.add(response);
+                }
+                else if (before != null && isVisible(before)) {
+                    deleted.add(before.getId());
+                }
+            }
+
+            if (updated.isEmpty() && deleted.isEmpty() && changes.shifts.isEmpty()) {
+                return null;
+            }
+
+            return new WidgetChanges(version, updated, deleted, changes.shifts);
+        }
+
+        /**
+         * Sends event identified by its version.
+         * @param message Event.
+         * @return Whether client is still connected.
+         */
+        boolean send(Message message) {
+            Object data = message.data instanceof Changes
+                    ? render((Changes) message.data, message.version)
+                    : message.data;
+            if (data == null) {
+                return true;
+            }
+
+            try {
+                emitter.send(SseEmitter
+                        .event()
+                        .id(Long.toString(message.version))
+                        .name(message.name)
+                        .data(data, MediaType.APPLICATION_JSON));
+
+                return true;
+            }
+            catch (IOException | IllegalStateException ex) {
+                disconnect();
+
+                return false;
+            }
+        }
+
+        /**
+         * Removes client from the feed and drops its queued events.
+         */
+        void detach() {
+            detached = true;
+            subscribers.remove(this);
+            messages.clear();
+        }
+
+        /**
+         * Removes client from the feed and completes its response. Isn't called under the lock of the feed.
+         */
+        void disconnect() {
+            detach();
+            emitter.complete();
+        }
+
+        boolean isVisible(Widget widget) {
+            return widgetFilter == null || widgetFilter.contains(widget);
+        }
+    }
+}
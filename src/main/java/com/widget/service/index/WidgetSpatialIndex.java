@@ -0,0 +1,386 @@
+package com.widget.service.index;
+
+import com.widget.service.model.Widget;
+import com.widget.service.model.WidgetFilter;
+import com.widget.storage.abstraction.IIndex;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * R-tree over widget bounding boxes (Guttman, quadratic split).
+ */
+@Component
+public class WidgetSpatialIndex implements IIndex<Widget> {
+    private static final int MAX_ENTRIES = 16;
+    private static final int MIN_ENTRIES = 6;
+
+    private ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<UUID, Entry> entriesById = new HashMap<>();
+    private Node root = new Node(true);
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<Widget> getEntityType() {
+        return Widget.class;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object add(Widget widget) {
+        lock.writeLock().lock();
+        try {
+            Entry oldEntry = entriesById.remove(widget.getId());
+            if (oldEntry != null) {
+                delete(oldEntry);
+            }
+
+            Entry entry = new Entry(widget);
+            entriesById.put(widget.getId(), entry);
+            insert(entry);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove(Widget widget) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entriesById.remove(widget.getId());
+            if (entry != null) {
+                delete(entry);
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            entriesById.clear();
+            root = new Node(true);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns widgets which are entirely inside of filter rectangle.
+     * @param filter Widgets filter.
+     */
+    public List<Widget> findInside(WidgetFilter filter) {
+        Box area = new Box(filter.getX1(), filter.getY1(), filter.getX2(), filter.getY2());
+        List<Widget> result = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            search(root, area, result);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+
+        return result;
+    }
+
+    /**
+     * Collects widgets inside of area from subtree.
+     * @param node Subtree root.
+     * @param area Search area.
+     * @param result Found widgets.
+     */
+    private void search(Node node, Box area, List<Widget> result) {
+        for (Box item : node.items) {
+            if (node.leaf) {
+                if (area.contains(item)) {
+                    result.add(((Entry) item).widget);
+                }
+            }
+            else if (area.intersects(item)) {
+                search((Node) item, area, result);
+            }
+        }
+    }
+
+    /**
+     * Puts entry into the leaf which needs the least enlargement and splits overflowed nodes up to the root.
+     * @param entry Entry to insert.
+     */
+    private void insert(Entry entry) {
+        Node node = root;
+        while (!node.leaf) {
+            Node bestChild = null;
+            double bestEnlargement = Double.POSITIVE_INFINITY;
+            for (Box item : node.items) {
+                double enlargement = item.enlargement(entry);
+                if (bestChild == null
+                        || enlargement < bestEnlargement
+                        || (enlargement == bestEnlargement && item.area() < bestChild.area())) {
+                    bestChild = (Node) item;
+                    bestEnlargement = enlargement;
+                }
+            }
+            node = bestChild;
+        }
+
+        node.addItem(entry);
+
+        Node sibling = null;
+        while (true) {
+            if (node.items.size() > MAX_ENTRIES) {
+                sibling = split(node);
+            }
+            else {
+                node.recalculate();
+            }
+
+            Node parent = node.parent;
+            if (parent == null) {
+                if (sibling != null) {
+                    root = new Node(false);
+                    root.addItem(node);
+                    root.addItem(sibling);
+                    root.recalculate();
+                }
+                return;
+            }
+
+            if (sibling != null) {
+                parent.addItem(sibling);
+                sibling = null;
+            }
+            node = parent;
+        }
+    }
+
+    /**
+     * Removes entry from its leaf and re-inserts entries of underflowed nodes.
+     * @param entry Entry to delete.
+     */
+    private void delete(Entry entry) {
+        Node node = entry.parent;
+        node.items.remove(entry);
+
+        List<Entry> orphans = new ArrayList<>();
+        while (node.parent != null) {
+            Node parent = node.parent;
+            if (node.items.size() < MIN_ENTRIES) {
+                parent.items.remove(node);
+                collectEntries(node, orphans);
+            }
+            else {
+                node.recalculate();
+            }
+            node = parent;
+        }
+        root.recalculate();
+
+        while (!root.leaf && root.items.size() == 1) {
+            root = (Node) root.items.get(0);
+            root.parent = null;
+        }
+        if (!root.leaf && root.items.isEmpty()) {
+            root = new Node(true);
+        }
+
+        orphans.forEach(this::insert);
+    }
+
+    /**
+     * Collects all leaf entries from subtree.
+     * @param node Subtree root.
+     * @param result Collected entries.
+     */
+    private void collectEntries(Node node, List<Entry> result) {
+        for (Box item : node.items) {
+            if (node.leaf) {
+                result.add((Entry) item);
+            }
+            else {
+                collectEntries((Node) item, result);
+            }
+        }
+    }
+
+    /**
+     * Splits overflowed node in two using quadratic algorithm.
+     * @param node Node to split. It keeps the first group of items.
+     * @return New node with the second group of items.
+     */
+    private Node split(Node node) {
+        List<Box> items = new ArrayList<>(node.items);
+
+        int seed1 = 0, seed2 = 1;
+        double worstWaste = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < items.size(); i++) {
+            for (int j = i + 1; j < items.size(); j++) {
+                Box a = items.get(i), b = items.get(j);
+                double waste = a.union(b).area() - a.area() - b.area();
+                if (waste > worstWaste) {
+                    worstWaste = waste;
+                    seed1 = i;
+                    seed2 = j;
+                }
+            }
+        }
+
+        Node sibling = new Node(node.leaf);
+        node.items.clear();
+        node.addItem(items.get(seed1));
+        sibling.addItem(items.get(seed2));
+        node.recalculate();
+        sibling.recalculate();
+        items.remove(seed2);
+        items.remove(seed1);
+
+        while (!items.isEmpty()) {
+            if (node.items.size() + items.size() == MIN_ENTRIES) {
+                items.forEach(node::addItem);
+                break;
+            }
+            if (sibling.items.size() + items.size() == MIN_ENTRIES) {
+                items.forEach(sibling::addItem);
+                break;
+            }
+
+            int nextIndex = 0;
+            double maxPreference = -1;
+            for (int i = 0; i < items.size(); i++) {
+                double preference = Math.abs(node.enlargement(items.get(i)) - sibling.enlargement(items.get(i)));
+                if (preference > maxPreference) {
+                    maxPreference = preference;
+                    nextIndex = i;
+                }
+            }
+
+            Box next = items.remove(nextIndex);
+            double enlargement1 = node.enlargement(next), enlargement2 = sibling.enlargement(next);
+            Node target;
+            if (enlargement1 != enlargement2) {
+                target = enlargement1 < enlargement2 ? node : sibling;
+            }
+            else if (node.area() != sibling.area()) {
+                target = node.area() < sibling.area() ? node : sibling;
+            }
+            else {
+                target = node.items.size() <= sibling.items.size() ? node : sibling;
+            }
+            target.addItem(next);
+            target.extend(next);
+        }
+
+        node.recalculate();
+        sibling.recalculate();
+
+        return sibling;
+    }
+
+    /**
+     * Axis-aligned rectangle.
+     */
+    private static class Box {
+        double minX, minY, maxX, maxY;
+        Node parent;
+
+        Box(double minX, double minY, double maxX, double maxY) {
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+        }
+
+        double area() {
+            return maxX < minX ? 0 : (maxX - minX) * (maxY - minY);
+        }
+
+        double enlargement(Box other) {
+            return union(other).area() - area();
+        }
+
+        Box union(Box other) {
+            return new Box(
+                    Math.min(minX, other.minX),
+                    Math.min(minY, other.minY),
+                    Math.max(maxX, other.maxX),
+                    Math.max(maxY, other.maxY));
+        }
+
+        void extend(Box other) {
+            minX = Math.min(minX, other.minX);
+            minY = Math.min(minY, other.minY);
+            maxX = Math.max(maxX, other.maxX);
+            maxY = Math.max(maxY, other.maxY);
+        }
+
+        boolean intersects(Box other) {
+            return other.minX <= maxX && other.maxX >= minX && other.minY <= maxY && other.maxY >= minY;
+        }
+
+        boolean contains(Box other) {
+            return other.minX >= minX && other.maxX <= maxX && other.minY >= minY && other.maxY <= maxY;
+        }
+    }
+
+    /**
+     * Tree node. Leaf nodes hold entries, others hold child nodes.
+     */
+    private static class Node extends Box {
+        final boolean leaf;
+        final List<Box> items = new ArrayList<>(MAX_ENTRIES + 1);
+
+        Node(boolean leaf) {
+            super(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY);
+            this.leaf = leaf;
+        }
+
+        void addItem(Box item) {
+            items.add(item);
+            item.parent = this;
+        }
+
+        void recalculate() {
+            minX = minY = Double.POSITIVE_INFINITY;
+            maxX = maxY = Double.NEGATIVE_INFINITY;
+            items.forEach(this::extend);
+        }
+    }
+
+    /**
+     * Leaf entry with bounding box of widget at the moment of indexing.
+     */
+    private static class Entry extends Box {
+        final Widget widget;
+
+        Entry(Widget widget) {
+            super(
+                widget.getX() - widget.getWidth() / 2,
+                widget.getY() - widget.getHeight() / 2,
+                widget.getX() + widget.getWidth() / 2,
+                widget.getY() + widget.getHeight() / 2);
+            this.widget = widget;
+        }
+    }
+}
@@ -0,0 +1,675 @@
+package com.widget.service.index;
+
+import com.widget.service.model.IZPosition;
+import com.widget.service.model.Widget;
+import com.widget.service.model.ZShift;
+import com.widget.storage.abstraction.ISortedIndex;
+import com.widget.storage.contract.PageRequest;
+import com.widget.storage.contract.PageResponse;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Index of widgets ordered by z-index from the top to the bottom.
+ * Widgets are kept in a treap ordered by z-index, where every node knows size of its subtree and its parent.
+ * Putting widget on an occupied z-index shifts the contiguous run of widgets above it by a pending shift
+ * of the subtrees which hold the run, so the write takes O(log n) regardless of the run length.
+ * Stored widgets are bound to their nodes and resolve z-index by summing pending shifts up to the root.
+ * Shifted subtrees are stamped with modification time of the write along with the shift, so shifted widgets
+ * resolve their modification time as the latest stamp up to the root.
+ * Writes are serialized by the storage, resolving z-index is optimistic and doesn't block writes,
+ * other reads hold the read lock for O(log n + page size).
+ */
+@Component
+public class WidgetZIndex implements ISortedIndex<Widget> {
+    /**
+     * Order of the index: by z-index descending, then by identifier.
+     */
+    public static final Comparator<Widget> Z_ORDER = Comparator
+            .comparingInt(Widget::getZ)
+            .reversed()
+            .thenComparing(Widget::getId);
+
+    /**
+     * Name of the order of the index, which identifies snapshots sorted by it.
+     */
+    public static final String Z_ORDER_NAME = "z-order";
+
+    // Walks to the root longer than this one are torn by a concurrent write, treap is never that deep.
+    private static final int MAX_OPTIMISTIC_DEPTH = 256;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private DistributionSummary shiftSizes;
+
+    private final StampedLock lock = new StampedLock();
+    private final ConcurrentHashMap<UUID, Node> nodesById = new ConcurrentHashMap<>();
+    private final Random random = new Random();
+    private Node root;
+
+    /**
+     * Registers meter of z-shifts.
+     */
+    @PostConstruct
+    public void init() {
+        shiftSizes = DistributionSummary
+                .builder("widgets.z.shift.cascade")
+                .description("Count of widgets shifted up by a single write")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<Widget> getEntityType() {
+        return Widget.class;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Comparator<Widget> getComparator() {
+        return Z_ORDER;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Widget> findAfter(Widget after, int limit) {
+        long stamp = lock.readLock();
+        try {
+            int skip = 0;
+            if (after != null) {
+                skip = countAbove(after.getZ());
+                Node node = find(after.getZ());
+                if (node != null && node.widget.getId().compareTo(after.getId()) <= 0) {
+                    skip++;
+                }
+            }
+
+            return collect(skip, limit);
+        }
+        finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Puts widget on its z-index, widgets which occupy it and z-indices right above it are shifted up.
+     * {@inheritDoc}
+     * @return Shift of widgets or null if nothing is shifted.
+     */
+    @Override
+    public Object add(Widget widget) {
+        remove(widget);
+
+        int z = widget.getZ();
+        Node node = new Node(widget, z, random.nextInt());
+        int shiftedCount;
+
+        long stamp = lock.writeLock();
+        try {
+            Node[] parts = split(root, z);
+            shiftedCount = countContiguous(parts[1], z);
+            Node[] run = splitBySize(parts[1], shiftedCount);
+            if (run[0] != null) {
+                run[0].apply(1, widget.getLastModified());
+            }
+
+            root = merge(merge(parts[0], node), merge(run[0], run[1]));
+            root.parent = null;
+            nodesById.put(widget.getId(), node);
+            widget.bindZ(node);
+        }
+        finally {
+            lock.unlockWrite(stamp);
+        }
+
+        shiftSizes.record(shiftedCount);
+        return shiftedCount == 0 ? null : new ZShift(z, shiftedCount);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove(Widget widget) {
+        Node node = nodesById.remove(widget.getId());
+        if (node == null) {
+            return;
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            long z = resolve(node);
+            ZonedDateTime shiftedAt = resolveShiftedAt(node);
+            Node[] parts = split(root, z);
+            Node[] rest = splitBySize(parts[1], 1);
+            root = merge(parts[0], rest[1]);
+            if (root != null) {
+                root.parent = null;
+            }
+            node.parent = null;
+            node.widget.unbindZ(node, (int) z, shiftedAt);
+        }
+        finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            visit(root, 0, null, (node, z, shiftedAt) -> node.widget.unbindZ(node, z, shiftedAt));
+            nodesById.clear();
+            root = null;
+        }
+        finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns whether widget can be put on its z-index without shifting any widget over Integer.MAX_VALUE.
+     * @param widget Widget to put, which may be indexed already.
+     */
+    public boolean canAdd(Widget widget) {
+        long stamp = lock.readLock();
+        try {
+            int z = widget.getZ();
+            int runLength = countContiguousFrom(z);
+            if (runLength == 0 || z + (long) runLength - 1 < Integer.MAX_VALUE) {
+                return true;
+            }
+
+            // Indexed widget is removed from the run before it's put, which stops the shift below its position.
+            Node node = nodesById.get(widget.getId());
+            return node != null && resolve(node) >= z;
+        }
+        finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns count of indexed widgets.
+     */
+    public int size() {
+        return nodesById.size();
+    }
+
+    /**
+     * Returns the greatest z-index or null if there are no widgets.
+     */
+    public Integer getMaxZ() {
+        long stamp = lock.readLock();
+        try {
+            if (root == null) {
+                return null;
+            }
+
+            long z = 0;
+            Node node = root;
+            while (node.right != null) {
+                z += node.shift;
+                node = node.right;
+            }
+
+            return (int) (z + node.z);
+        }
+        finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Widget> copyAll() {
+        long stamp = lock.readLock();
+        try {
+            List<Widget> result = new ArrayList<>(size(root));
+            visit(root, 0, null, (node, z, shiftedAt) -> result.add(node.widget.copy(z, shiftedAt)));
+            Collections.reverse(result);
+
+            return result;
+        }
+        finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns page of widgets sorted by z-index in descending order.
+     * @param pageRequest Page request.
+     */
+    public PageResponse<Widget> findAll(PageRequest pageRequest) {
+        long stamp = lock.readLock();
+        try {
+            long skip = (long) pageRequest.getPage() * pageRequest.getPerPage();
+            List<Widget> records = skip >= size(root)
+                    ? new ArrayList<>()
+                    : collect((int) skip, pageRequest.getPerPage());
+
+            return new PageResponse<>(records, size(root));
+        }
+        finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns z-index of node. Executes under the lock.
+     * @param node Node.
+     */
+    private static long resolve(Node node) {
+        long z = node.z;
+        for (Node parent = node.parent; parent != null; parent = parent.parent) {
+            z += parent.shift;
+        }
+
+        return z;
+    }
+
+    /**
+     * Returns time of the last shift of node or null. Executes under the lock.
+     * @param node Node.
+     */
+    private static ZonedDateTime resolveShiftedAt(Node node) {
+        ZonedDateTime shiftedAt = node.shiftedAt;
+        for (Node parent = node.parent; parent != null; parent = parent.parent) {
+            shiftedAt = Widget.later(shiftedAt, parent.pendingShiftedAt);
+        }
+
+        return shiftedAt;
+    }
+
+    /**
+     * Returns node on passed z-index or null. Executes under the lock.
+     * @param z Z-index.
+     */
+    private Node find(long z) {
+        long offset = 0;
+        Node node = root;
+        while (node != null) {
+            long nodeZ = node.z + offset;
+            if (nodeZ == z) {
+                return node;
+            }
+
+            offset += node.shift;
+            node = nodeZ < z ? node.right : node.left;
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns count of widgets below passed z-index. Executes under the lock.
+     * @param z Z-index.
+     */
+    private int countBelow(long z) {
+        int count = 0;
+        long offset = 0;
+        Node node = root;
+        while (node != null) {
+            long nodeZ = node.z + offset;
+            offset += node.shift;
+            if (nodeZ < z) {
+                count += size(node.left) + 1;
+                node = node.right;
+            }
+            else {
+                node = node.left;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns count of widgets which occupy z-indices from passed one without gaps. Executes under the lock.
+     * @param z Z-index.
+     */
+    private int countContiguousFrom(long z) {
+        int below = countBelow(z), count = 0, base = 0;
+        long offset = 0;
+        Node node = root;
+        while (node != null) {
+            long nodeZ = node.z + offset;
+            int position = base + size(node.left);
+            offset += node.shift;
+            // Z-index minus position doesn't decrease in order and stays the same within the run.
+            if (nodeZ - position <= z - below) {
+                count = position + 1;
+                base = position + 1;
+                node = node.right;
+            }
+            else {
+                node = node.left;
+            }
+        }
+
+        return Math.max(0, count - below);
+    }
+
+    /**
+     * Returns count of widgets above passed z-index. Executes under the lock.
+     * @param z Z-index.
+     */
+    private int countAbove(long z) {
+        return size(root) - countBelow(z + 1);
+    }
+
+    /**
+     * Collects widgets in descending order of z-index. Executes under the lock.
+     * @param skip Count of the top widgets to skip.
+     * @param limit Max count of widgets.
+     */
+    private List<Widget> collect(int skip, int limit) {
+        List<Widget> result = new ArrayList<>(Math.min(limit, Math.max(0, size(root) - skip)));
+        collect(root, skip, limit, result);
+
+        return result;
+    }
+
+    private void collect(Node node, int skip, int limit, List<Widget> result) {
+        if (node == null || result.size() >= limit) {
+            return;
+        }
+
+        int rightSize = size(node.right);
+        if (skip < rightSize) {
+            collect(node.right, skip, limit, result);
+        }
+        if (skip <= rightSize && result.size() < limit) {
+            result.add(node.widget);
+        }
+        collect(node.left, Math.max(0, skip - rightSize - 1), limit, result);
+    }
+
+    /**
+     * Visits nodes of subtree with their z-indices in ascending order. Executes under the lock.
+     * @param node Root of subtree.
+     * @param offset Pending shift of subtree.
+     * @param shiftedAt Pending time of shift of subtree, may be null.
+     * @param visitor Visitor of node with its z-index and time of its last shift.
+     */
+    private static void visit(Node node, long offset, ZonedDateTime shiftedAt, NodeVisitor visitor) {
+        while (node != null) {
+            long z = node.z + offset;
+            ZonedDateTime nodeShiftedAt = Widget.later(node.shiftedAt, shiftedAt);
+            offset += node.shift;
+            shiftedAt = Widget.later(shiftedAt, node.pendingShiftedAt);
+            visit(node.left, offset, shiftedAt, visitor);
+            visitor.accept(node, (int) z, nodeShiftedAt);
+            node = node.right;
+        }
+    }
+
+    /**
+     * Returns length of the run of nodes at the start of the subtree, which occupy z-indices from passed one
+     * without gaps. All nodes of subtree are at passed z-index or above. Executes under the write lock.
+     * @param node Root of subtree, its pending shift is applied.
+     * @param z Z-index.
+     */
+    private static int countContiguous(Node node, long z) {
+        int count = 0, base = 0;
+        long offset = 0;
+        while (node != null) {
+            long nodeZ = node.z + offset;
+            int position = base + size(node.left);
+            offset += node.shift;
+            // Z-indices grow at least by one per position, so nodes of the run are exactly the leading ones.
+            if (nodeZ - position == z) {
+                count = position + 1;
+                base = position + 1;
+                node = node.right;
+            }
+            else {
+                node = node.left;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Splits subtree into nodes below passed z-index and the rest. Executes under the write lock.
+     * @param node Root of subtree, its pending shift is applied.
+     * @param z Z-index.
+     */
+    private static Node[] split(Node node, long z) {
+        if (node == null) {
+            return new Node[2];
+        }
+
+        node.push();
+        Node[] parts;
+        if (node.z < z) {
+            parts = split(node.right, z);
+            node.setRight(parts[0]);
+            parts[0] = node;
+        }
+        else {
+            parts = split(node.left, z);
+            node.setLeft(parts[1]);
+            parts[1] = node;
+        }
+        node.update();
+
+        return parts;
+    }
+
+    /**
+     * Splits subtree into its first nodes and the rest. Executes under the write lock.
+     * @param node Root of subtree, its pending shift is applied.
+     * @param count Count of the first nodes.
+     */
+    private static Node[] splitBySize(Node node, int count) {
+        if (node == null) {
+            return new Node[2];
+        }
+
+        node.push();
+        Node[] parts;
+        if (size(node.left) < count) {
+            parts = splitBySize(node.right, count - size(node.left) - 1);
+            node.setRight(parts[0]);
+            parts[0] = node;
+        }
+        else {
+            parts = splitBySize(node.left, count);
+            node.setLeft(parts[1]);
+            parts[1] = node;
+        }
+        node.update();
+
+        return parts;
+    }
+
+    /**
+     * Merges subtrees, where all nodes of the left one are below nodes of the right one. Executes under the write lock.
+     * @param left Root of the left subtree, its pending shift is applied.
+     * @param right Root of the right subtree, its pending shift is applied.
+     */
+    private static Node merge(Node left, Node right) {
+        if (left == null || right == null) {
+            return left == null ? right : left;
+        }
+
+        if (left.priority > right.priority) {
+            left.push();
+            left.setRight(merge(left.right, right));
+            left.update();
+
+            return left;
+        }
+
+        right.push();
+        right.setLeft(merge(left, right.left));
+        right.update();
+
+        return right;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * Visitor of nodes of the treap.
+     */
+    private interface NodeVisitor {
+        void accept(Node node, int z, ZonedDateTime shiftedAt);
+    }
+
+    /**
+     * Node of the treap. Z-index of node is its z plus pending shifts of all its ancestors,
+     * pending shift of node applies to its children. Time of the last shift of node is the latest of its own
+     * and pending times of its ancestors.
+     */
+    private class Node implements IZPosition {
+        private final Widget widget;
+        private final int priority;
+        private long z;
+        private long shift;
+        private ZonedDateTime shiftedAt;
+        private ZonedDateTime pendingShiftedAt;
+        private int size = 1;
+        private Node left;
+        private Node right;
+        private Node parent;
+
+        Node(Widget widget, long z, int priority) {
+            this.widget = widget;
+            this.z = z;
+            this.priority = priority;
+        }
+
+        /**
+         * Resolves z-index optimistically and falls back to the read lock when a write interferes.
+         */
+        @Override
+        public int getZ() {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                long result = z;
+                int depth = 0;
+                for (Node node = parent; node != null && depth < MAX_OPTIMISTIC_DEPTH; node = node.parent) {
+                    result += node.shift;
+                    depth++;
+                }
+                if (depth < MAX_OPTIMISTIC_DEPTH && lock.validate(stamp)) {
+                    return (int) result;
+                }
+            }
+
+            stamp = lock.readLock();
+            try {
+                return (int) resolve(this);
+            }
+            finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * Resolves time of the last shift optimistically and falls back to the read lock when a write interferes.
+         */
+        @Override
+        public ZonedDateTime getShiftedAt() {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                ZonedDateTime result = shiftedAt;
+                int depth = 0;
+                for (Node node = parent; node != null && depth < MAX_OPTIMISTIC_DEPTH; node = node.parent) {
+                    result = Widget.later(result, node.pendingShiftedAt);
+                    depth++;
+                }
+                if (depth < MAX_OPTIMISTIC_DEPTH && lock.validate(stamp)) {
+                    return result;
+                }
+            }
+
+            stamp = lock.readLock();
+            try {
+                return resolveShiftedAt(this);
+            }
+            finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * Shifts node and its subtree. Executes under the write lock.
+         * @param delta Shift of z-index.
+         * @param at Modification time of the shifting write, may be null.
+         */
+        void apply(long delta, ZonedDateTime at) {
+            z += delta;
+            shift += delta;
+            shiftedAt = Widget.later(shiftedAt, at);
+            pendingShiftedAt = Widget.later(pendingShiftedAt, at);
+        }
+
+        /**
+         * Applies pending shift to children.
+         */
+        void push() {
+            if (shift != 0 || pendingShiftedAt != null) {
+                if (left != null) {
+                    left.apply(shift, pendingShiftedAt);
+                }
+                if (right != null) {
+                    right.apply(shift, pendingShiftedAt);
+                }
+                shift = 0;
+                pendingShiftedAt = null;
+            }
+        }
+
+        void update() {
+            size = 1 + size(left) + size(right);
+            parent = null;
+        }
+
+        void setLeft(Node node) {
+            left = node;
+            if (node != null) {
+                node.parent = this;
+            }
+        }
+
+        void setRight(Node node) {
+            right = node;
+            if (node != null) {
+                node.parent = this;
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.widget.service.index;
+
+import com.widget.storage.EntityRejectedException;
+
+/**
+ * Thrown when placing widget would move some widget over the max z-index.
+ */
+public class ZIndexOverflowException extends EntityRejectedException {
+    public ZIndexOverflowException() {
+        super("Z-index of a widget would exceed " + Integer.MAX_VALUE + ".");
+    }
+}
@@ -0,0 +1,109 @@
+package com.widget.service.mapping;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.widget.service.contract.WidgetQuery;
+import com.widget.service.contract.WidgetRequest;
+import com.widget.service.contract.WidgetResponse;
+import com.widget.service.model.Widget;
+import com.widget.service.model.WidgetFilter;
+import com.widget.storage.contract.PageResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps widgets to contracts and back with plain field copies, so mapping involves no reflection.
+ * Absent fields of requests are skipped and keep defaults of widget.
+ */
+@Component
+public class WidgetMapper {
+    /**
+     * Creates widget from request.
+     * @param widgetRequest Request body of widget.
+     */
+    public Widget toWidget(WidgetRequest widgetRequest) {
+        Widget widget = new Widget();
+        if (widgetRequest.getX() != null) {
+            widget.setX(widgetRequest.getX());
+        }
+        if (widgetRequest.getY() != null) {
+            widget.setY(widgetRequest.getY());
+        }
+        if (widgetRequest.getZ() != null) {
+            widget.setZ(widgetRequest.getZ());
+        }
+        if (widgetRequest.getWidth() != null) {
+            widget.setWidth(widgetRequest.getWidth());
+        }
+        if (widgetRequest.getHeight() != null) {
+            widget.setHeight(widgetRequest.getHeight());
+        }
+
+        return widget;
+    }
+
+    /**
+     * Creates response from widget.
+     * @param widget Widget.
+     */
+    public WidgetResponse toResponse(Widget widget) {
+        WidgetResponse widgetResponse = new WidgetResponse();
+        widgetResponse.setId(widget.getId());
+        widgetResponse.setX(widget.getX());
+        widgetResponse.setY(widget.getY());
+        widgetResponse.setZ(widget.getZ());
+        widgetResponse.setWidth(widget.getWidth());
+        widgetResponse.setHeight(widget.getHeight());
+        widgetResponse.setLastModified(widget.getLastModified());
+
+        return widgetResponse;
+    }
+
+    /**
+     * Writes widget as response object without creating the response.
+     * @param widget Widget.
+     * @param generator JSON generator.
+     */
+    public void writeResponse(Widget widget, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectField("id", widget.getId());
+        generator.writeNumberField("x", widget.getX());
+        generator.writeNumberField("y", widget.getY());
+        generator.writeNumberField("z", widget.getZ());
+        generator.writeNumberField("width", widget.getWidth());
+        generator.writeNumberField("height", widget.getHeight());
+        generator.writeObjectField("lastModified", widget.getLastModified());
+        generator.writeEndObject();
+    }
+
+    /**
+     * Creates responses from widgets keeping their order.
+     * @param widgets Widgets.
+     */
+    public List<WidgetResponse> toResponses(List<Widget> widgets) {
+        List<WidgetResponse> widgetResponses = new ArrayList<>(widgets.size());
+        for (Widget widget : widgets) {
+            widgetResponses.add(toResponse(widget));
+        }
+
+        return widgetResponses;
+    }
+
+    /**
+     * Creates page of responses from page of widgets, which is left intact.
+     * @param page Page of widgets.
+     */
+    public PageResponse<WidgetResponse> toResponsePage(PageResponse<Widget> page) {
+        return new PageResponse<>(toResponses(page.getRecords()), page.getTotal(), page.getSnapshot(), page.getNext());
+    }
+
+    /**
+     * Creates filter from query.
+     * @param widgetQuery Query of widgets.
+     */
+    public WidgetFilter toFilter(WidgetQuery widgetQuery) {
+        return new WidgetFilter(widgetQuery.getX1(), widgetQuery.getY1(), widgetQuery.getX2(), widgetQuery.getY2());
+    }
+}
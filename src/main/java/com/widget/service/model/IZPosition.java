@@ -0,0 +1,18 @@
+package com.widget.service.model;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Position of stored widget in z-order, which follows shifts of the order without writing the widget.
+ */
+public interface IZPosition {
+    /**
+     * Returns current z-index of widget.
+     */
+    int getZ();
+
+    /**
+     * Returns modification time of the last write which shifted widget up or null if widget wasn't shifted.
+     */
+    ZonedDateTime getShiftedAt();
+}
@@ -1,5 +1,7 @@
 package com.widget.service.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -9,18 +11,145 @@ import java.time.ZonedDateTime;
 
 @Getter @Setter
 public class Widget extends Entity {
+    /**
+     * The lowest z-index which clients may set.
+     */
+    public static final int MIN_Z = -1_000_000_000;
+
+    /**
+     * The highest z-index which clients may set. Widgets above it can only be shifted there,
+     * the rest of int range leaves room for shifts.
+     */
+    public static final int MAX_Z = 1_000_000_000;
+
     @Min(0)
     private int x;
 
     @Min(0)
     private int y;
 
-    private Integer z = null;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private int z;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean zSet;
+
+    /**
+     * Position of stored widget in z-order, which resolves its current z-index and the last shift of it.
+     */
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile IZPosition zPosition;
 
     @Min(0)
+    @Setter(AccessLevel.NONE)
     private double width;
 
     @Min(0)
+    @Setter(AccessLevel.NONE)
     private double height;
+
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    private double area;
+
+    @Getter(AccessLevel.NONE)
     private ZonedDateTime lastModified;
+
+    public void setWidth(double width) {
+        this.width = width;
+        area = width * height;
+    }
+
+    public void setHeight(double height) {
+        this.height = height;
+        area = width * height;
+    }
+
+    /**
+     * Returns z-index, which follows position of widget in z-order while widget is stored.
+     */
+    public int getZ() {
+        IZPosition position = zPosition;
+        return position == null ? z : position.getZ();
+    }
+
+    /**
+     * Returns modification time, which is the time of the last write that shifted stored widget up when it's later.
+     */
+    public ZonedDateTime getLastModified() {
+        IZPosition position = zPosition;
+        return position == null ? lastModified : later(lastModified, position.getShiftedAt());
+    }
+
+    /**
+     * Sets z-index, which unbinds it from position of stored widget until the widget is saved.
+     * @param z Z-index.
+     */
+    public void setZ(int z) {
+        this.z = z;
+        zSet = true;
+        zPosition = null;
+    }
+
+    /**
+     * Returns whether z-index is set.
+     */
+    public boolean hasZ() {
+        return zPosition != null || zSet;
+    }
+
+    /**
+     * Binds z-index and modification time to position of widget in z-order, so shifts of the order
+     * don't write the widget.
+     * @param position Position of widget.
+     */
+    public void bindZ(IZPosition position) {
+        zPosition = position;
+    }
+
+    /**
+     * Unbinds z-index and modification time from position of widget in z-order unless z-index was set after binding.
+     * @param position Position which widget is bound to.
+     * @param z Z-index to keep, which is the last position of widget.
+     * @param shiftedAt Time of the last shift of widget, may be null.
+     */
+    public void unbindZ(IZPosition position, int z, ZonedDateTime shiftedAt) {
+        if (zPosition == position) {
+            lastModified = later(lastModified, shiftedAt);
+            setZ(z);
+        }
+    }
+
+    /**
+     * Returns copy of widget which is unbound from z-order.
+     */
+    @Override
+    public Widget copy() {
+        IZPosition position = zPosition;
+        return position == null ? copy(z, null) : copy(position.getZ(), position.getShiftedAt());
+    }
+
+    /**
+     * Returns copy of widget which is unbound from z-order and placed on passed z-index.
+     * @param z Z-index of copy.
+     * @param shiftedAt Time of the last shift of widget, may be null.
+     */
+    public Widget copy(int z, ZonedDateTime shiftedAt) {
+        Widget copy = (Widget) super.copy();
+        copy.lastModified = later(lastModified, shiftedAt);
+        copy.setZ(z);
+
+        return copy;
+    }
+
+    /**
+     * Returns the later of times, either of which may be null.
+     */
+    public static ZonedDateTime later(ZonedDateTime first, ZonedDateTime second) {
+        return first == null || second != null && second.isAfter(first) ? second : first;
+    }
 }
@@ -14,4 +14,15 @@ public class WidgetFilter {
     private Double y1;
     private Double x2;
     private Double y2;
+
+    /**
+     * Checks whether widget is entirely inside of filter rectangle.
+     * @param widget Widget.
+     */
+    public boolean contains(Widget widget) {
+        return widget.getX() - widget.getWidth() / 2 >= x1
+                && widget.getX() + widget.getWidth() / 2 <= x2
+                && widget.getY() - widget.getHeight() / 2 >= y1
+                && widget.getY() + widget.getHeight() / 2 <= y2;
+    }
 }
\ No newline at end of file
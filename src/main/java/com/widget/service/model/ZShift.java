@@ -0,0 +1,29 @@
+package com.widget.service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Shift of widgets which occupied contiguous z-indices one level up, made to free z-index of written widget.
+ */
+@Getter
+@AllArgsConstructor
+public class ZShift {
+    /**
+     * The lowest shifted z-index.
+     */
+    private int from;
+
+    /**
+     * Count of shifted widgets, which occupied z-indices from the lowest one without gaps.
+     */
+    private int count;
+
+    /**
+     * Returns z-index after the shift.
+     * @param z Z-index before the shift.
+     */
+    public int apply(int z) {
+        return z >= from && z - from < count ? z + 1 : z;
+    }
+}
@@ -1,45 +1,136 @@
 package com.widget.service.service;
 
+import com.widget.service.index.WidgetSpatialIndex;
+import com.widget.service.index.WidgetZIndex;
 import com.widget.service.model.Widget;
 import com.widget.service.model.WidgetFilter;
 
 import com.widget.storage.EntityNotFoundException;
+import com.widget.storage.EntityRejectedException;
 import com.widget.storage.abstraction.IStorage;
 import com.widget.storage.contract.PageRequest;
 import com.widget.storage.contract.PageResponse;
+import com.widget.storage.contract.Snapshot;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.Collectors;
 
 /**
  * Service for working with widgets.
  */
 @Service
 public class WidgetService {
+    /**
+     * Order of filtered widgets: by area ascending.
+     */
+    public static final Comparator<Widget> AREA_ORDER = Comparator.comparingDouble(Widget::getArea);
+
     @Autowired
     private IStorage storage;
 
+    @Autowired
+    private WidgetZIndex zIndex;
+
+    @Autowired
+    private WidgetSpatialIndex spatialIndex;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private DistributionSummary filterMatches;
+
+    /**
+     * Registers meter of filtered widgets.
+     */
+    @PostConstruct
+    public void init() {
+        filterMatches = DistributionSummary
+                .builder("widgets.filter.matches")
+                .description("Count of widgets found inside of filter, which are sorted by area")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
     /**
      * Returns all widgets from the storage.
+     * Widgets without filter are read from storage snapshot if paging request has snapshot version,
+     * and by keyset if paging request has cursor.
      * @param pageRequest Paging request.
      * @param widgetFilter Filter.
      * @return
+     * @throws IllegalArgumentException Cursor is malformed.
      */
     public PageResponse getAllWidgets(PageRequest pageRequest, WidgetFilter widgetFilter) {
-        Comparator<Widget> zSortComparator = Comparator.comparing(Widget::getZ, Comparator.reverseOrder());
         if (widgetFilter == null) {
-            return storage.findAll(Widget.class, pageRequest, zSortComparator);
+            PageResponse<Widget> pagedWidgets;
+            if (pageRequest.getSnapshot() != null) {
+                pagedWidgets = getSnapshotPage(pageRequest);
+            }
+            else if (pageRequest.getCursor() != null) {
+                List<Widget> widgets = storage.findAfter(
+                        Widget.class,
+                        decodeCursor(pageRequest.getCursor()),
+                        pageRequest.getPerPage(),
+                        WidgetZIndex.Z_ORDER);
+                pagedWidgets = new PageResponse<>(widgets, pageRequest.isWithTotal() ? zIndex.size() : null);
+            }
+            else {
+                pagedWidgets = zIndex.findAll(pageRequest);
+            }
+
+            List<Widget> records = pagedWidgets.getRecords();
+            if (!records.isEmpty() && records.size() == pageRequest.getPerPage()) {
+                pagedWidgets.setNext(encodeCursor(records.get(records.size() - 1)));
+            }
+
+            return pagedWidgets;
         }
         else {
-            Comparator<Widget> areaSortComparator = Comparator.comparing(x -> x.getWidth() * x.getHeight());
-            List<Widget> allWidgets = storage.findAll(Widget.class, areaSortComparator);
+            List<Widget> filteredWidgets = findInside(widgetFilter);
+            filteredWidgets.sort(AREA_ORDER);
 
-            List filteredWidgets = filterByArea(allWidgets, widgetFilter);
             return PageResponse.create(filteredWidgets, pageRequest);
         }
     }
 
+    /**
+     * Returns version of widgets which is changed by every write of any widget.
+     */
+    public long getWidgetsVersion() {
+        return storage.getVersion(Widget.class);
+    }
+
+    /**
+     * Returns all widgets for export without paging. Widgets are taken from the storage snapshot of the current
+     * version, so the export is consistent and isn't changed by writes however long it's written.
+     * Widgets without filter are in z-order, filtered widgets are sorted by area.
+     * @param widgetFilter Filter, may be null.
+     */
+    public Iterable<Widget> exportWidgets(WidgetFilter widgetFilter) {
+        List<Widget> widgets = storage
+                .snapshot(Widget.class, WidgetZIndex.Z_ORDER_NAME, WidgetZIndex.Z_ORDER, null)
+                .getRecords();
+        if (widgetFilter == null) {
+            return widgets;
+        }
+
+        List<Widget> filteredWidgets = widgets
+                .stream()
+                .filter(widgetFilter::contains)
+                .sorted(AREA_ORDER)
+                .collect(Collectors.toList());
+        filterMatches.record(filteredWidgets.size());
+
+        return filteredWidgets;
+    }
+
     /**
      * Returns widget from the storage by its id.
      * @param id Widget id.
@@ -58,18 +149,55 @@ public class WidgetService {
         return storage.save(newWidget);
     }
 
+    /**
+     * Creates and saves widgets in storage in one batch.
+     * @param newWidgets Widgets to create in storage.
+     * @return Saved widgets.
+     */
+    public List<Widget> createWidgets(List<Widget> newWidgets) {
+        return storage.saveAll(newWidgets);
+    }
+
+    /**
+     * Creates and saves widgets in storage in one batch, widgets which can't be placed are skipped.
+     * @param newWidgets Widgets to create in storage.
+     * @param rejectionHandler Handler of rejection and position of rejected widget.
+     * @return Widgets of the batch.
+     */
+    public List<Widget> createWidgets(
+            List<Widget> newWidgets,
+            ObjIntConsumer<EntityRejectedException> rejectionHandler) {
+        return storage.saveAll(newWidgets, rejectionHandler);
+    }
+
     /**
      * Modifies widget.
      * @param updatedWidget Updated widget.
      * @return Saved entity.
      */
     public Widget modifyWidget(Widget updatedWidget) throws EntityNotFoundException {
-        UUID widgetId = updatedWidget.getId();
-        if (!storage.exists(Widget.class, widgetId)) {
-            throw new EntityNotFoundException();
-        }
+        return storage.update(updatedWidget);
+    }
+
+    /**
+     * Modifies existing widgets in one batch.
+     * @param updatedWidgets Updated widgets.
+     * @return Saved widgets, null in place of widgets which don't exist.
+     */
+    public List<Widget> modifyWidgets(List<Widget> updatedWidgets) {
+        return storage.updateAll(updatedWidgets);
+    }
 
-        return storage.save(updatedWidget);
+    /**
+     * Modifies existing widgets in one batch, widgets which can't be placed are skipped.
+     * @param updatedWidgets Updated widgets.
+     * @param rejectionHandler Handler of rejection and position of rejected widget.
+     * @return Saved widgets, null in place of widgets which don't exist or are rejected.
+     */
+    public List<Widget> modifyWidgets(
+            List<Widget> updatedWidgets,
+            ObjIntConsumer<EntityRejectedException> rejectionHandler) {
+        return storage.updateAll(updatedWidgets, rejectionHandler);
     }
 
     /**
@@ -81,33 +209,77 @@ public class WidgetService {
     }
 
     /**
-     * Filters collection of widgets by area.
-     * @param widgets Widgets collection.
-     * @param filter Widgets filter.
+     * Deletes widgets from storage by their ids in one batch.
+     * @param ids Widget ids.
+     * @return Ids of deleted widgets.
      */
-    private List<Widget> filterByArea(List<Widget> widgets, WidgetFilter filter) {
-        List<Widget> result = new ArrayList<>();
+    public List<UUID> deleteWidgets(List<UUID> ids) {
+        return storage.deleteAll(Widget.class, ids);
+    }
 
-        boolean isWidgetAreaOver = false;
-        double filterArea = (filter.getX2() - filter.getX1()) * (filter.getY2() - filter.getY1());
+    /**
+     * Returns widgets inside of filter and records their count.
+     * @param widgetFilter Filter.
+     */
+    private List<Widget> findInside(WidgetFilter widgetFilter) {
+        List<Widget> widgets = spatialIndex.findInside(widgetFilter);
+        filterMatches.record(widgets.size());
 
-        Iterator<Widget> iterator = widgets.iterator();
-        while(iterator.hasNext() && !isWidgetAreaOver) {
-            Widget curWidget = iterator.next();
+        return widgets;
+    }
 
-            double widgetArea = curWidget.getWidth() * curWidget.getHeight();
-            if (widgetArea <= filterArea) {
-                if (curWidget.getX() - curWidget.getWidth() / 2 >= filter.getX1()
-                        && curWidget.getX() + curWidget.getWidth() / 2 <= filter.getX2()
-                        && curWidget.getY() - curWidget.getHeight() / 2 >= filter.getY1()
-                        && curWidget.getY() + curWidget.getHeight() / 2<= filter.getY2()) {
-                    result.add(curWidget);
-                }
-            } else {
-                isWidgetAreaOver = true;
-            }
+    /**
+     * Returns page of widgets from storage snapshot, by cursor if it's present.
+     * @param pageRequest Paging request.
+     */
+    private PageResponse<Widget> getSnapshotPage(PageRequest pageRequest) {
+        Snapshot<Widget> snapshot = storage.snapshot(
+                Widget.class,
+                WidgetZIndex.Z_ORDER_NAME,
+                WidgetZIndex.Z_ORDER,
+                pageRequest.getSnapshot());
+        if (pageRequest.getCursor() == null) {
+            return PageResponse.create(snapshot, pageRequest);
         }
 
-        return result;
+        List<Widget> widgets = snapshot.getRecords();
+        int position = Collections.binarySearch(widgets, decodeCursor(pageRequest.getCursor()), WidgetZIndex.Z_ORDER);
+        int startIndex = position >= 0 ? position + 1 : -position - 1,
+                endIndex = Math.min(startIndex + pageRequest.getPerPage(), widgets.size());
+
+        PageResponse<Widget> pagedWidgets = new PageResponse<>(
+                widgets.subList(startIndex, endIndex),
+                pageRequest.isWithTotal() ? widgets.size() : null);
+        pagedWidgets.setSnapshot(snapshot.getVersion());
+
+        return pagedWidgets;
+    }
+
+    /**
+     * Encodes position of widget in z-order into opaque cursor.
+     * @param widget Last widget of the page.
+     */
+    private String encodeCursor(Widget widget) {
+        String position = widget.getZ() + ":" + widget.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes cursor into widget which has the same position in z-order.
+     * @param cursor Cursor.
+     * @throws IllegalArgumentException Cursor is malformed.
+     */
+    private Widget decodeCursor(String cursor) {
+        String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        String[] parts = position.split(":");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Malformed cursor.");
+        }
+
+        Widget widget = new Widget();
+        widget.setZ(Integer.parseInt(parts[0]));
+        widget.setId(UUID.fromString(parts[1]));
+
+        return widget;
     }
 }
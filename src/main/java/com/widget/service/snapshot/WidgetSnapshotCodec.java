@@ -0,0 +1,208 @@
+package com.widget.service.snapshot;
+
+import com.widget.service.model.Widget;
+import com.widget.storage.abstraction.ISnapshotCodec;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Columnar snapshot of widgets written and read through memory-mapped file.
+ * File starts with magic number, format version and widgets count, then holds fixed-width columns:
+ * id halves, x, y, z, width, height, lastModified epoch seconds, nanoseconds and zone.
+ * Zone column holds indices into the table of zone ids, which follows the columns, so lastModified is restored
+ * in the zone it was written with. Snapshots of the first format version have no zones,
+ * their lastModified is restored in UTC.
+ */
+@Component
+public class WidgetSnapshotCodec implements ISnapshotCodec<Widget> {
+    private static final int MAGIC = 0x57434F4C;
+    private static final int FORMAT_VERSION = 2;
+    private static final int ZONELESS_FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int[] COLUMN_WIDTHS = {
+            Long.BYTES, Long.BYTES, Integer.BYTES, Integer.BYTES, Integer.BYTES,
+            Double.BYTES, Double.BYTES, Long.BYTES, Integer.BYTES, Integer.BYTES
+    };
+    private static final int[] ZONELESS_COLUMN_WIDTHS = Arrays.copyOf(COLUMN_WIDTHS, COLUMN_WIDTHS.length - 1);
+    private static final long NO_TIME = Long.MIN_VALUE;
+    // Z-indices never go below Widget.MIN_Z, so the lowest int marks widget without z-index.
+    private static final int NO_Z = Integer.MIN_VALUE;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<Widget> getEntityType() {
+        return Widget.class;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(Path path, Collection<Widget> widgets) throws IOException {
+        int count = widgets.size();
+        // Modification times follow z-shifts, so they are read once for both the zone table and the columns.
+        ZonedDateTime[] lastModifiedTimes = new ZonedDateTime[count];
+        Map<String, Integer> zoneIndices = new LinkedHashMap<>();
+        long zonesSize = Integer.BYTES;
+        int row = 0;
+        for (Widget widget : widgets) {
+            ZonedDateTime lastModified = widget.getLastModified();
+            lastModifiedTimes[row++] = lastModified;
+            if (lastModified != null && !zoneIndices.containsKey(lastModified.getZone().getId())) {
+                zoneIndices.put(lastModified.getZone().getId(), zoneIndices.size());
+                zonesSize += Short.BYTES + lastModified.getZone().getId().length();
+            }
+        }
+
+        long size = HEADER_SIZE + (long) count * getRecordSize(COLUMN_WIDTHS) + zonesSize;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot of " + count + " widgets exceeds mappable size");
+        }
+
+        try (FileChannel channel = FileChannel.open(
+                path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(count);
+            int[] columns = getColumnOffsets(count, COLUMN_WIDTHS);
+
+            row = 0;
+            for (Widget widget : widgets) {
+                buffer.putLong(columns[0] + row * Long.BYTES, widget.getId().getMostSignificantBits());
+                buffer.putLong(columns[1] + row * Long.BYTES, widget.getId().getLeastSignificantBits());
+                buffer.putInt(columns[2] + row * Integer.BYTES, widget.getX());
+                buffer.putInt(columns[3] + row * Integer.BYTES, widget.getY());
+                buffer.putInt(columns[4] + row * Integer.BYTES, widget.hasZ() ? widget.getZ() : NO_Z);
+                buffer.putDouble(columns[5] + row * Double.BYTES, widget.getWidth());
+                buffer.putDouble(columns[6] + row * Double.BYTES, widget.getHeight());
+                ZonedDateTime lastModified = lastModifiedTimes[row];
+                buffer.putLong(
+                        columns[7] + row * Long.BYTES,
+                        lastModified == null ? NO_TIME : lastModified.toEpochSecond());
+                buffer.putInt(columns[8] + row * Integer.BYTES, lastModified == null ? 0 : lastModified.getNano());
+                buffer.putInt(
+                        columns[9] + row * Integer.BYTES,
+                        lastModified == null ? 0 : zoneIndices.get(lastModified.getZone().getId()));
+                row++;
+            }
+
+            buffer.position(HEADER_SIZE + count * getRecordSize(COLUMN_WIDTHS));
+            buffer.putInt(zoneIndices.size());
+            for (String zoneId : zoneIndices.keySet()) {
+                // Zone ids consist of ASCII characters only.
+                buffer.putShort((short) zoneId.length()).put(zoneId.getBytes(StandardCharsets.US_ASCII));
+            }
+
+            buffer.force();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void read(Path path, Consumer<Widget> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int version = buffer.getInt() == MAGIC ? buffer.getInt() : -1;
+            if (version != FORMAT_VERSION && version != ZONELESS_FORMAT_VERSION) {
+                throw new IOException("Unknown widget snapshot format: " + path);
+            }
+
+            int count = buffer.getInt();
+            int[] columnWidths = version == FORMAT_VERSION ? COLUMN_WIDTHS : ZONELESS_COLUMN_WIDTHS;
+            long columnsEnd = HEADER_SIZE + (long) count * getRecordSize(columnWidths);
+            if (channel.size() < columnsEnd + (version == FORMAT_VERSION ? Integer.BYTES : 0)) {
+                throw new IOException("Widget snapshot is truncated: " + path);
+            }
+
+            ZoneId[] zones = null;
+            if (version == FORMAT_VERSION) {
+                buffer.position((int) columnsEnd);
+                zones = new ZoneId[buffer.getInt()];
+                for (int i = 0; i < zones.length; i++) {
+                    byte[] zoneId = new byte[buffer.getShort()];
+                    buffer.get(zoneId);
+                    zones[i] = ZoneId.of(new String(zoneId, StandardCharsets.US_ASCII));
+                }
+            }
+
+            int[] columns = getColumnOffsets(count, columnWidths);
+            for (int row = 0; row < count; row++) {
+                consumer.accept(readWidget(buffer, columns, row, zones));
+            }
+        }
+    }
+
+    /**
+     * Materializes widget from columns.
+     * @param buffer Snapshot buffer.
+     * @param columns Column offsets.
+     * @param row Widget row.
+     * @param zones Zones of the zone column, null if snapshot has no zones.
+     */
+    private Widget readWidget(ByteBuffer buffer, int[] columns, int row, ZoneId[] zones) {
+        Widget widget = new Widget();
+        widget.setId(new UUID(
+                buffer.getLong(columns[0] + row * Long.BYTES),
+                buffer.getLong(columns[1] + row * Long.BYTES)));
+        widget.setX(buffer.getInt(columns[2] + row * Integer.BYTES));
+        widget.setY(buffer.getInt(columns[3] + row * Integer.BYTES));
+        int z = buffer.getInt(columns[4] + row * Integer.BYTES);
+        if (z != NO_Z) {
+            widget.setZ(z);
+        }
+        widget.setWidth(buffer.getDouble(columns[5] + row * Double.BYTES));
+        widget.setHeight(buffer.getDouble(columns[6] + row * Double.BYTES));
+        long epochSecond = buffer.getLong(columns[7] + row * Long.BYTES);
+        if (epochSecond != NO_TIME) {
+            Instant instant = Instant.ofEpochSecond(epochSecond, buffer.getInt(columns[8] + row * Integer.BYTES));
+            ZoneId zone = zones == null ? ZoneOffset.UTC : zones[buffer.getInt(columns[9] + row * Integer.BYTES)];
+            widget.setLastModified(ZonedDateTime.ofInstant(instant, zone));
+        }
+
+        return widget;
+    }
+
+    /**
+     * Returns offsets of columns which are laid out one after another in the order of the file description.
+     * @param count Widgets count.
+     * @param columnWidths Widths of columns of the format version.
+     */
+    private static int[] getColumnOffsets(int count, int[] columnWidths) {
+        int[] offsets = new int[columnWidths.length];
+        int offset = HEADER_SIZE;
+        for (int i = 0; i < columnWidths.length; i++) {
+            offsets[i] = offset;
+            offset += count * columnWidths[i];
+        }
+
+        return offsets;
+    }
+
+    /**
+     * Returns size of all columns of a single widget.
+     * @param columnWidths Widths of columns of the format version.
+     */
+    private static int getRecordSize(int[] columnWidths) {
+        return Arrays.stream(columnWidths).sum();
+    }
+}
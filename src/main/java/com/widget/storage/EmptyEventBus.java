@@ -0,0 +1,24 @@
+package com.widget.storage;
+
+import com.widget.storage.abstraction.IEventBus;
+import com.widget.storage.contract.EntityEvent;
+
+import java.util.List;
+
+public class EmptyEventBus implements IEventBus {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasListeners() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void publish(List<EntityEvent> events) {
+
+    }
+}
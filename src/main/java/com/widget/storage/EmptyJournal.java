@@ -0,0 +1,35 @@
+package com.widget.storage;
+
+import com.widget.storage.abstraction.BaseEntity;
+import com.widget.storage.abstraction.IJournal;
+import com.widget.storage.contract.JournalRecord;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+public class EmptyJournal implements IJournal {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void open(Consumer<JournalRecord> consumer, Supplier<Collection<BaseEntity>> snapshotSource) {
+
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long append(JournalRecord record) {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void awaitDurable(long position) {
+
+    }
+}
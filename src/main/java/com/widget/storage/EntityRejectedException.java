@@ -0,0 +1,10 @@
+package com.widget.storage;
+
+/**
+ * Thrown by interceptors before a write to reject the written entity, nothing of the write is stored then.
+ */
+public class EntityRejectedException extends RuntimeException {
+    public EntityRejectedException(String message) {
+        super(message);
+    }
+}
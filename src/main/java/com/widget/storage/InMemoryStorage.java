@@ -2,28 +2,125 @@ package com.widget.storage;
 
 import com.widget.storage.contract.PageRequest;
 import com.widget.storage.abstraction.BaseEntity;
+import com.widget.storage.abstraction.IEventBus;
+import com.widget.storage.abstraction.IIndex;
 import com.widget.storage.abstraction.IInterceptor;
+import com.widget.storage.abstraction.IJournal;
+import com.widget.storage.abstraction.ISortedIndex;
 import com.widget.storage.abstraction.IStorage;
+import com.widget.storage.contract.EntityEvent;
+import com.widget.storage.contract.JournalRecord;
 import com.widget.storage.contract.PageResponse;
+import com.widget.storage.contract.Snapshot;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.validation.Valid;
 import java.lang.reflect.Type;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ObjIntConsumer;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * In-memory storage implementation.
+ * Reads are lock-free, writes are serialized by the lock of entity type, so writes of different types don't contend.
+ * Writes are appended to the journal, which restores stored entities on startup when it is enabled.
+ * Interceptors run synchronously under the lock, committed writes are then published to asynchronous listeners
+ * after the lock is released, in the order of writes of every type.
+ * Scans filter entities before sorting, scans of large types are split across the dedicated fork-join pool,
+ * so predicates and comparators must be thread-safe.
+ * Time spent waiting for contended write locks is recorded as storage.lock.wait.
+ * Snapshots are cached by entity type and name of sort. Besides the latest snapshot of every sort,
+ * the oldest snapshots retained for pinned reads are evicted when they hold more than storage.snapshots.max-records
+ * records in total.
  */
 @Service
 public class InMemoryStorage implements IStorage {
-    private ConcurrentHashMap<Type, List<BaseEntity>> entities = new ConcurrentHashMap<>();
+    private ConcurrentHashMap<Type, Map<Object, BaseEntity>> entities = new ConcurrentHashMap<>();
 
     @Autowired(required=false)
-    private IInterceptor interceptor = new EmptyInterceptor();
+    private List<IInterceptor> interceptors = new ArrayList<>();
+
+    @Autowired(required=false)
+    private IJournal journal = new EmptyJournal();
+
+    @Autowired(required=false)
+    private IEventBus eventBus = new EmptyEventBus();
+
+    @Autowired(required=false)
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Autowired(required=false)
+    private List<IIndex> indexes = new ArrayList<>();
+
+    private ConcurrentHashMap<Type, List<IIndex>> indexesByType = new ConcurrentHashMap<>();
+
+    private ConcurrentHashMap<Type, ReentrantLock> locks = new ConcurrentHashMap<>();
+
+    private ConcurrentHashMap<Type, Timer> lockWaitTimers = new ConcurrentHashMap<>();
+
+    private ConcurrentHashMap<Type, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    // Events of writes in progress, every list is accessed under the lock of its type.
+    private ConcurrentHashMap<Type, List<EntityEvent>> pendingEvents = new ConcurrentHashMap<>();
+
+    // Events of committed writes waiting to be published, in the order of writes.
+    private ConcurrentHashMap<Type, EventQueue> eventQueues = new ConcurrentHashMap<>();
+
+    // Journal positions of writes in progress, which are awaited after the lock of their type is released.
+    private ConcurrentHashMap<Type, Long> pendingJournalPositions = new ConcurrentHashMap<>();
+
+    private ConcurrentHashMap<Type, Map<String, SnapshotHistory>> snapshots = new ConcurrentHashMap<>();
+
+    // Snapshots retained for pinned reads in the order of creation, accessed under the retention lock.
+    private ArrayDeque<RetainedSnapshot> retainedSnapshots = new ArrayDeque<>();
+
+    private long retainedRecordsCount;
+
+    private ReentrantLock retentionLock = new ReentrantLock();
+
+    @Value("${storage.snapshots.max-records:1000000}")
+    private long maxSnapshotRecords;
+
+    @Value("${storage.scan.parallel-threshold:10000}")
+    private int parallelScanThreshold;
+
+    @Value("${storage.scan.parallelism:0}")
+    private int scanParallelism;
+
+    private ForkJoinPool scanPool;
+
+    /**
+     * Creates pool of parallel scans and restores entities from the journal.
+     */
+    @PostConstruct
+    public void init() {
+        scanPool = new ForkJoinPool(scanParallelism > 0 ? scanParallelism : Runtime.getRuntime().availableProcessors());
+        journal.open(this::restore, this::copyAll);
+    }
+
+    /**
+     * Stops pool of parallel scans.
+     */
+    @PreDestroy
+    public void destroy() {
+        scanPool.shutdown();
+    }
 
     /**
      * {@inheritDoc}
@@ -37,29 +134,19 @@ public class InMemoryStorage implements IStorage {
             isNewEntity = true;
         }
 
-        List<BaseEntity> entitiesByType = entities.getOrDefault(obj.getClass(), null);
-        if (entitiesByType != null) {
-            if (isNewEntity) {
-                createEntity(entitiesByType, obj);
+        lock(obj.getClass());
+        try {
+            Map<Object, BaseEntity> entitiesByType = getEntities(obj.getClass());
+            BaseEntity entity = isNewEntity ? null : entitiesByType.get(obj.getId());
+            if (entity != null) {
+                updateEntity(entitiesByType, entity, obj);
             }
             else {
-                Optional<BaseEntity> entity = entitiesByType
-                        .stream()
-                        .filter(x -> x.getId().equals(obj.getId()))
-                        .findFirst();
-
-                if (entity.isPresent()) {
-                    updateEntity(entitiesByType, entity.get(), obj);
-                }
-                else {
-                    createEntity(entitiesByType, obj);
-                }
+                createEntity(entitiesByType, obj);
             }
         }
-        else {
-            List<BaseEntity> newEntityCollection = new ArrayList<>();
-            entities.put(obj.getClass(), newEntityCollection);
-            createEntity(newEntityCollection, obj);
+        finally {
+            unlock(obj.getClass());
         }
 
         return obj;
@@ -70,8 +157,34 @@ public class InMemoryStorage implements IStorage {
      */
     @Override
     public <T extends  BaseEntity> List saveAll(List<T> objs) {
-        for (BaseEntity obj: objs) {
-            save(obj);
+        return saveAll(objs, InMemoryStorage::rethrow);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends BaseEntity> List saveAll(List<T> objs, ObjIntConsumer<EntityRejectedException> rejectionHandler) {
+        List<Class> types = objs
+                .stream()
+                .map(x -> (Class) x.getClass())
+                .distinct()
+                .sorted(Comparator.comparing(Class::getName))
+                .collect(Collectors.toList());
+
+        types.forEach(this::lock);
+        try {
+            for (int i = 0; i < objs.size(); i++) {
+                try {
+                    save(objs.get(i));
+                }
+                catch (EntityRejectedException ex) {
+                    rejectionHandler.accept(ex, i);
+                }
+            }
+        }
+        finally {
+            types.forEach(this::unlock);
         }
 
         return objs;
@@ -81,25 +194,86 @@ public class InMemoryStorage implements IStorage {
      * {@inheritDoc}
      */
     @Override
-    public <T extends BaseEntity> Optional<T> findById(Class<T> type, UUID id) {
-        return (Optional<T>) entities.getOrDefault(type, new ArrayList<>())
-            .stream()
-            .filter(x -> x.getId().equals(id))
-            .findFirst();
+    public <T extends BaseEntity> T update(T obj) throws EntityNotFoundException {
+        lock(obj.getClass());
+        try {
+            Map<Object, BaseEntity> entitiesByType = getEntities(obj.getClass());
+            BaseEntity entity = obj.getId() == null ? null : entitiesByType.get(obj.getId());
+            if (entity == null) {
+                throw new EntityNotFoundException();
+            }
+
+            updateEntity(entitiesByType, entity, obj);
+        }
+        finally {
+            unlock(obj.getClass());
+        }
+
+        return obj;
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public <T extends BaseEntity> List findAll(Class<T> type, Comparator<T> sort) {
-        List<T> result = new ArrayList(entities.getOrDefault(type, new ArrayList<>()));
+    public <T extends BaseEntity> List<T> updateAll(List<T> objs) {
+        return updateAll(objs, InMemoryStorage::rethrow);
+    }
 
-        if (sort != null) {
-            result.sort(sort);
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends BaseEntity> List<T> updateAll(
+            List<T> objs,
+            ObjIntConsumer<EntityRejectedException> rejectionHandler) {
+        List<Class> types = objs
+                .stream()
+                .map(x -> (Class) x.getClass())
+                .distinct()
+                .sorted(Comparator.comparing(Class::getName))
+                .collect(Collectors.toList());
+        List<T> updatedObjs = new ArrayList<>(objs.size());
+
+        types.forEach(this::lock);
+        try {
+            for (int i = 0; i < objs.size(); i++) {
+                T obj = objs.get(i);
+                Map<Object, BaseEntity> entitiesByType = getEntities(obj.getClass());
+                BaseEntity entity = obj.getId() == null ? null : entitiesByType.get(obj.getId());
+                if (entity != null) {
+                    try {
+                        updateEntity(entitiesByType, entity, obj);
+                    }
+                    catch (EntityRejectedException ex) {
+                        rejectionHandler.accept(ex, i);
+                        entity = null;
+                    }
+                }
+                updatedObjs.add(entity != null ? obj : null);
+            }
+        }
+        finally {
+            types.forEach(this::unlock);
         }
 
-        return result;
+        return updatedObjs;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends BaseEntity> Optional<T> findById(Class<T> type, UUID id) {
+        return Optional.ofNullable((T) entities.getOrDefault(type, Collections.emptyMap()).get(id));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends BaseEntity> List findAll(Class<T> type, Comparator<T> sort) {
+        return scan(type, null, sort);
     }
 
     /**
@@ -107,7 +281,7 @@ public class InMemoryStorage implements IStorage {
      */
     @Override
     public <T extends BaseEntity> List findAll(Class<T> type, Predicate<T> filterPredicate, Comparator<T> sort) {
-        return (List) findAll(type, sort).stream().filter(filterPredicate).collect(Collectors.toList());
+        return scan(type, filterPredicate, sort);
     }
 
     /**
@@ -118,13 +292,7 @@ public class InMemoryStorage implements IStorage {
             Class<T> type,
             @Valid PageRequest pageRequest,
             Comparator<T> sort) {
-        List<T> entitiesByType = findAll(type, sort);
-        if (entitiesByType.isEmpty()) {
-            return PageResponse.empty();
-        }
-        else {
-            return PageResponse.create(entitiesByType, pageRequest);
-        }
+        return findPage(type, null, pageRequest, sort);
     }
 
     /**
@@ -136,24 +304,101 @@ public class InMemoryStorage implements IStorage {
             Predicate<T> filterPredicate,
             @Valid PageRequest pageRequest,
             Comparator<T> sort) {
-        List<T> filteredEntitiesByType = findAll(type, filterPredicate, sort);
-
-        return PageResponse.create(filteredEntitiesByType, pageRequest);
+        return findPage(type, filterPredicate, pageRequest, sort);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void deleteById(Class type, UUID id) throws EntityNotFoundException {
-        List<BaseEntity> entitiesByType = entities.getOrDefault(type, new ArrayList<>());
-        BaseEntity entityToDelete = entitiesByType
+    public <T extends BaseEntity> List findAfter(Class<T> type, T after, int limit, Comparator<T> sort) {
+        ISortedIndex<T> index = getSortedIndex(type, sort);
+        if (index != null) {
+            return index.findAfter(after, limit);
+        }
+
+        return (List) findAll(type, x -> after == null || sort.compare(x, after) > 0, sort)
                 .stream()
-                .filter(x -> x.getId().equals(id))
-                .findFirst()
-                .orElseThrow(EntityNotFoundException::new);
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
 
-        entitiesByType.remove(entityToDelete);
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends BaseEntity> Snapshot<T> snapshot(
+            Class<T> type,
+            String sortName,
+            Comparator<T> sort,
+            Long version) {
+        SnapshotHistory history = snapshots
+                .computeIfAbsent(type, x -> new ConcurrentHashMap<>())
+                .computeIfAbsent(sortName, x -> new SnapshotHistory());
+
+        Snapshot pinnedSnapshot = version == null ? null : history.get(version);
+        if (pinnedSnapshot != null) {
+            return pinnedSnapshot;
+        }
+
+        Snapshot latestSnapshot = history.latest;
+        if (latestSnapshot != null && latestSnapshot.getVersion() == getVersionCounter(type).get()) {
+            return latestSnapshot;
+        }
+
+        // Concurrent readers of the same stale snapshot wait for the first one to build it.
+        history.buildLock.lock();
+        try {
+            latestSnapshot = history.latest;
+            if (latestSnapshot != null && latestSnapshot.getVersion() == getVersionCounter(type).get()) {
+                return latestSnapshot;
+            }
+
+            ISortedIndex<T> index = getSortedIndex(type, sort);
+            long currentVersion;
+            List<T> records;
+            lock(type);
+            try {
+                currentVersion = getVersionCounter(type).get();
+                if (index != null) {
+                    records = index.copyAll();
+                }
+                else {
+                    records = new ArrayList<>();
+                    getEntities(type).values().forEach(x -> records.add((T) x.copy()));
+                }
+            }
+            finally {
+                unlock(type);
+            }
+
+            if (index == null) {
+                records.sort(sort);
+            }
+
+            Snapshot<T> snapshot = new Snapshot<>(currentVersion, Collections.unmodifiableList(records));
+            history.latest = snapshot;
+            retain(history, snapshot);
+
+            return snapshot;
+        }
+        finally {
+            history.buildLock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteById(Class type, UUID id) throws EntityNotFoundException {
+        lock(type);
+        try {
+            removeEntity(getEntities(type), type, id);
+        }
+        finally {
+            unlock(type);
+        }
     }
 
     /**
@@ -169,7 +414,51 @@ public class InMemoryStorage implements IStorage {
      */
     @Override
     public void deleteAll(Class type) {
-        entities.remove(type);
+        lock(type);
+        try {
+            Map<Object, BaseEntity> entitiesByType = getEntities(type);
+            List<BaseEntity> deletedEntities = interceptors.isEmpty()
+                    ? Collections.emptyList()
+                    : new ArrayList<>(entitiesByType.values());
+
+            deletedEntities.forEach(entity -> interceptors.forEach(x -> x.beforeDelete(entity)));
+            entitiesByType.clear();
+            getIndexes(type).forEach(IIndex::clear);
+            appendToJournal(type, JournalRecord.deleteAll(type));
+            deletedEntities.forEach(entity -> interceptors.forEach(x -> x.afterDelete(entity)));
+            long version = getVersionCounter(type).incrementAndGet();
+            addEvent(type, () -> EntityEvent.deleteAll(type, version));
+        }
+        finally {
+            unlock(type);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<UUID> deleteAll(Class type, List<UUID> ids) {
+        List<UUID> deletedIds = new ArrayList<>();
+
+        lock(type);
+        try {
+            Map<Object, BaseEntity> entitiesByType = getEntities(type);
+            for (UUID id : ids) {
+                if (entitiesByType.containsKey(id)) {
+                    removeEntity(entitiesByType, type, id);
+                    deletedIds.add(id);
+                }
+            }
+        }
+        catch (EntityNotFoundException ex) {
+            throw new IllegalStateException(ex);
+        }
+        finally {
+            unlock(type);
+        }
+
+        return deletedIds;
     }
 
     /**
@@ -177,31 +466,519 @@ public class InMemoryStorage implements IStorage {
      */
     @Override
     public boolean exists(Class type, UUID id) {
-        return entities.getOrDefault(type, new ArrayList<>())
-            .stream()
-            .anyMatch(x -> x.getId().equals(id));
+        return entities.getOrDefault(type, Collections.emptyMap()).containsKey(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int count(Class type) {
+        return entities.getOrDefault(type, Collections.emptyMap()).size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getVersion(Class type) {
+        return getVersionCounter(type).get();
+    }
+
+    /**
+     * Filters entities of the type and sorts the rest. Types with fewer entities than the threshold
+     * are scanned on the calling thread, others are split across the scan pool.
+     * @param type Entity type.
+     * @param filterPredicate Predicate to filter or null to take all entities.
+     * @param sort Comparator to sort or null to keep storage order.
+     */
+    private <T extends BaseEntity> List<T> scan(Class<T> type, Predicate<T> filterPredicate, Comparator<T> sort) {
+        Collection<T> entitiesByType = (Collection<T>) entities.getOrDefault(type, Collections.emptyMap()).values();
+
+        if (entitiesByType.size() < parallelScanThreshold) {
+            List<T> result = new ArrayList<>();
+            for (T entity : entitiesByType) {
+                if (filterPredicate == null || filterPredicate.test(entity)) {
+                    result.add(entity);
+                }
+            }
+            if (sort != null) {
+                result.sort(sort);
+            }
+
+            return result;
+        }
+
+        return scanPool.submit(() -> {
+            Stream<T> stream = entitiesByType.parallelStream();
+            if (filterPredicate != null) {
+                stream = stream.filter(filterPredicate);
+            }
+            if (sort != null) {
+                stream = stream.sorted(sort);
+            }
+
+            return stream.collect(Collectors.toList());
+        }).join();
+    }
+
+    /**
+     * Selects page of filtered entities without sorting all of them. Entities preceding the end of the page
+     * are kept in the bounded heap, total is counted while scanning. Large types are scanned in parallel.
+     * @param type Entity type.
+     * @param filterPredicate Predicate to filter or null to take all entities.
+     * @param pageRequest Page request.
+     * @param sort Comparator to sort or null to keep storage order.
+     */
+    private <T extends BaseEntity> PageResponse findPage(
+            Class<T> type,
+            Predicate<T> filterPredicate,
+            PageRequest pageRequest,
+            Comparator<T> sort) {
+        Collection<T> entitiesByType = (Collection<T>) entities.getOrDefault(type, Collections.emptyMap()).values();
+        long pageStartIndex = (long) pageRequest.getPage() * pageRequest.getPerPage();
+        int limit = (int) Math.min(pageStartIndex + pageRequest.getPerPage(), entitiesByType.size());
+
+        TopEntities<T> topEntities;
+        if (entitiesByType.size() < parallelScanThreshold) {
+            topEntities = new TopEntities<>(limit, sort);
+            for (T entity : entitiesByType) {
+                if (filterPredicate == null || filterPredicate.test(entity)) {
+                    topEntities.add(entity);
+                }
+            }
+        }
+        else {
+            topEntities = scanPool.submit(() -> entitiesByType
+                    .parallelStream()
+                    .filter(x -> filterPredicate == null || filterPredicate.test(x))
+                    .collect(() -> new TopEntities<>(limit, sort), TopEntities::add, TopEntities::merge))
+                    .join();
+        }
+
+        List<T> records = topEntities.toList();
+        List<T> pageRecords = pageStartIndex >= records.size()
+                ? new ArrayList<>()
+                : records.subList((int) pageStartIndex, records.size());
+
+        return new PageResponse<>(pageRecords, topEntities.count);
+    }
+
+    /**
+     * Returns entities of the type indexed by identifier.
+     * @param type Entity type.
+     */
+    private Map<Object, BaseEntity> getEntities(Type type) {
+        return entities.computeIfAbsent(type, x -> new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Returns lock which serializes writes of the entity type.
+     * The lock is reentrant, so interceptors may save entities of the same type.
+     * @param type Entity type.
+     */
+    private ReentrantLock getLock(Type type) {
+        return locks.computeIfAbsent(type, x -> new ReentrantLock());
+    }
+
+    /**
+     * Acquires lock of the entity type. Time spent waiting is recorded only when the lock is held by another thread,
+     * so uncontended writes aren't slowed down by recording.
+     * @param type Entity type.
+     */
+    private void lock(Type type) {
+        ReentrantLock lock = getLock(type);
+        if (lock.tryLock()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        lock.lock();
+        lockWaitTimers
+                .computeIfAbsent(type, x -> Timer
+                        .builder("storage.lock.wait")
+                        .description("Time spent waiting for the write lock of entity type")
+                        .tag("type", ((Class) x).getSimpleName())
+                        .publishPercentileHistogram()
+                        .register(meterRegistry))
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Releases lock of the entity type. Events of the write are queued when its outermost lock is released,
+     * so writes made by interceptors are published together with the write which caused them.
+     * Then the write waits until its journal records are durable and publishes queued events,
+     * other writes of the type proceed meanwhile.
+     * @param type Entity type.
+     */
+    private void unlock(Type type) {
+        ReentrantLock lock = getLock(type);
+        Long journalPosition = null;
+        boolean hasEvents = false;
+        try {
+            if (lock.getHoldCount() == 1) {
+                journalPosition = pendingJournalPositions.remove(type);
+                List<EntityEvent> events = pendingEvents.remove(type);
+                if (events != null) {
+                    getEventQueue(type).events.add(events);
+                    hasEvents = true;
+                }
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+
+        try {
+            if (journalPosition != null) {
+                journal.awaitDurable(journalPosition);
+            }
+        }
+        finally {
+            if (hasEvents) {
+                publishEvents(type);
+            }
+        }
+    }
+
+    /**
+     * Publishes queued events of the entity type in the order of writes. Events are published by one writer
+     * at a time, which takes events queued by others meanwhile, so the rest of writers don't wait for it.
+     * @param type Entity type.
+     */
+    private void publishEvents(Type type) {
+        EventQueue queue = getEventQueue(type);
+        // Events queued while the publisher releases its lock are taken by the next pass.
+        while (!queue.events.isEmpty() && queue.publishLock.tryLock()) {
+            try {
+                for (List<EntityEvent> events = queue.events.poll(); events != null; events = queue.events.poll()) {
+                    eventBus.publish(events);
+                }
+            }
+            finally {
+                queue.publishLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns queue of events of the entity type.
+     * @param type Entity type.
+     */
+    private EventQueue getEventQueue(Type type) {
+        return eventQueues.computeIfAbsent(type, x -> new EventQueue());
+    }
+
+    /**
+     * Appends record to the journal and remembers its position for the current write.
+     * Executes under the lock of entity type.
+     * @param type Entity type.
+     * @param record Record to append.
+     */
+    private void appendToJournal(Type type, JournalRecord record) {
+        pendingJournalPositions.put(type, journal.append(record));
+    }
+
+    /**
+     * Adds event to the events of the current write when there are listeners. Executes under the lock of entity type.
+     * @param type Entity type.
+     * @param event Factory of event.
+     */
+    private void addEvent(Type type, Supplier<EntityEvent> event) {
+        if (eventBus.hasListeners()) {
+            pendingEvents.computeIfAbsent(type, x -> new ArrayList<>()).add(event.get());
+        }
+    }
+
+    /**
+     * Returns counter of versions of the entity type.
+     * @param type Entity type.
+     */
+    private AtomicLong getVersionCounter(Type type) {
+        return versions.computeIfAbsent(type, x -> new AtomicLong());
     }
 
     /**
      * Creates new entity.
-     * @param entitiesCollection Collection to put new entity.
+     * @param entitiesCollection Entities of the same type indexed by identifier.
      * @param newEntity Entity to put.
      */
-    private synchronized void createEntity(List entitiesCollection, BaseEntity newEntity) {
-        interceptor.beforeCreate(newEntity);
-        entitiesCollection.add(newEntity);
-        interceptor.afterCreate(newEntity);
+    private void createEntity(Map<Object, BaseEntity> entitiesCollection, BaseEntity newEntity) {
+        interceptors.forEach(x -> x.beforeCreate(newEntity));
+        entitiesCollection.put(newEntity.getId(), newEntity);
+        List<Object> indexChanges = addToIndexes(null, newEntity);
+        appendToJournal(newEntity.getClass(), JournalRecord.save(newEntity));
+        interceptors.forEach(x -> x.afterCreate(newEntity));
+        long version = getVersionCounter(newEntity.getClass()).incrementAndGet();
+        addEvent(newEntity.getClass(), () -> EntityEvent.create(newEntity.copy(), indexChanges, version));
     }
 
     /**
      * Updates existing entity.
-     * @param entitiesCollection Collection with existing entity.
+     * @param entitiesCollection Entities of the same type indexed by identifier.
      * @param oldEntity Entity to overwrite.
      * @param newEntity Edited entity.
      */
-    private synchronized void updateEntity(List<BaseEntity> entitiesCollection, BaseEntity oldEntity, BaseEntity newEntity) {
-        interceptor.beforeUpdate(newEntity);
-        entitiesCollection.set(entitiesCollection.indexOf(oldEntity), newEntity);
-        interceptor.afterUpdate(newEntity);
+    private void updateEntity(Map<Object, BaseEntity> entitiesCollection, BaseEntity oldEntity, BaseEntity newEntity) {
+        interceptors.forEach(x -> x.beforeUpdate(newEntity));
+        entitiesCollection.put(oldEntity.getId(), newEntity);
+        List<Object> indexChanges = addToIndexes(oldEntity, newEntity);
+        appendToJournal(newEntity.getClass(), JournalRecord.save(newEntity));
+        interceptors.forEach(x -> x.afterUpdate(newEntity));
+        long version = getVersionCounter(newEntity.getClass()).incrementAndGet();
+        addEvent(
+                newEntity.getClass(),
+                () -> EntityEvent.update(newEntity.copy(), oldEntity.copy(), indexChanges, version));
+    }
+
+    /**
+     * Removes existing entity.
+     * @param entitiesCollection Entities of the same type indexed by identifier.
+     * @param type Entity type.
+     * @param id Identifier of entity to remove.
+     * @throws EntityNotFoundException
+     */
+    private void removeEntity(Map<Object, BaseEntity> entitiesCollection, Type type, UUID id)
+            throws EntityNotFoundException {
+        BaseEntity entity = entitiesCollection.get(id);
+        if (entity == null) {
+            throw new EntityNotFoundException();
+        }
+
+        interceptors.forEach(x -> x.beforeDelete(entity));
+        BaseEntity deletedEntity = entitiesCollection.remove(id);
+        getIndexes(type).forEach(x -> x.remove(deletedEntity));
+        appendToJournal(type, JournalRecord.delete((Class) type, id));
+        interceptors.forEach(x -> x.afterDelete(deletedEntity));
+        long version = getVersionCounter(type).incrementAndGet();
+        addEvent(type, () -> EntityEvent.delete(deletedEntity.copy(), version));
+    }
+
+    /**
+     * Applies journaled record without interceptors.
+     * @param record Journaled record.
+     */
+    private void restore(JournalRecord record) {
+        Map<Object, BaseEntity> entitiesByType = getEntities(record.getType());
+        List<IIndex> typeIndexes = getIndexes(record.getType());
+
+        switch (record.getOperation()) {
+            case SAVE:
+                BaseEntity oldEntity = entitiesByType.put(record.getId(), record.getEntity());
+                addToIndexes(oldEntity, record.getEntity());
+                break;
+            case DELETE:
+                BaseEntity deletedEntity = entitiesByType.remove(record.getId());
+                if (deletedEntity != null) {
+                    typeIndexes.forEach(x -> x.remove(deletedEntity));
+                }
+                break;
+            default:
+                entitiesByType.clear();
+                typeIndexes.forEach(IIndex::clear);
+                break;
+        }
+
+        getVersionCounter(record.getType()).incrementAndGet();
+    }
+
+    /**
+     * Rethrows rejection of entity, which stops the batch.
+     * @param ex Rejection.
+     * @param position Position of rejected entity in the batch.
+     */
+    private static void rethrow(EntityRejectedException ex, int position) {
+        throw ex;
+    }
+
+    /**
+     * Returns copies of all stored entities. Entities of every type are copied under the lock of the type,
+     * so the copy doesn't see a write halfway, such as a z-shift which indexes apply lazily.
+     * The lock is taken directly, since the journal calls this method while it compacts and must not wait for itself.
+     */
+    private Collection<BaseEntity> copyAll() {
+        List<BaseEntity> result = new ArrayList<>();
+        for (Map.Entry<Type, Map<Object, BaseEntity>> entry : entities.entrySet()) {
+            ReentrantLock lock = getLock(entry.getKey());
+            lock.lock();
+            try {
+                entry.getValue().values().forEach(entity -> result.add(entity.copy()));
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Adds entity to indexes of its type, replacing its previous state.
+     * @param oldEntity Previous state of entity or null if entity is new.
+     * @param newEntity Entity to add.
+     * @return Changes of other entities made by indexes.
+     */
+    private List<Object> addToIndexes(BaseEntity oldEntity, BaseEntity newEntity) {
+        List<Object> changes = Collections.emptyList();
+        for (IIndex index : getIndexes(newEntity.getClass())) {
+            if (oldEntity != null) {
+                index.remove(oldEntity);
+            }
+
+            Object change = index.add(newEntity);
+            if (change != null) {
+                if (changes.isEmpty()) {
+                    changes = new ArrayList<>(1);
+                }
+                changes.add(change);
+            }
+        }
+
+        return changes;
+    }
+
+    /**
+     * Retains snapshot for pinned reads and evicts the oldest retained snapshots over the limit of records.
+     * The snapshot which has just been retained is never evicted.
+     * @param history History of the snapshot.
+     * @param snapshot Snapshot to retain.
+     */
+    private void retain(SnapshotHistory history, Snapshot snapshot) {
+        retentionLock.lock();
+        try {
+            history.retained.put(snapshot.getVersion(), snapshot);
+            retainedSnapshots.add(new RetainedSnapshot(history, snapshot));
+            retainedRecordsCount += snapshot.getRecords().size();
+
+            while (retainedSnapshots.size() > 1 && retainedRecordsCount > maxSnapshotRecords) {
+                RetainedSnapshot evicted = retainedSnapshots.poll();
+                evicted.history.retained.remove(evicted.snapshot.getVersion());
+                retainedRecordsCount -= evicted.snapshot.getRecords().size();
+            }
+        }
+        finally {
+            retentionLock.unlock();
+        }
+    }
+
+    /**
+     * Returns registered index which keeps entities in order of the comparator.
+     * @param type Entity type.
+     * @param sort Comparator.
+     * @return Index or null if there is no such index.
+     */
+    private <T extends BaseEntity> ISortedIndex<T> getSortedIndex(Class<T> type, Comparator<T> sort) {
+        for (IIndex index : getIndexes(type)) {
+            if (index instanceof ISortedIndex && ((ISortedIndex) index).getComparator() == sort) {
+                return (ISortedIndex<T>) index;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns indexes registered for entity type.
+     * @param type Entity type.
+     */
+    private List<IIndex> getIndexes(Type type) {
+        return indexesByType.computeIfAbsent(type, x -> indexes
+                .stream()
+                .filter(index -> index.getEntityType() == x)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * The first entities in sort order and count of all added entities.
+     * Keeps the greatest of retained entities at the head of heap, so it's replaced by the smaller ones.
+     */
+    private static class TopEntities<T> {
+        private final int limit;
+        private final Comparator<T> sort;
+        private final PriorityQueue<T> heap;
+        private final List<T> unsorted;
+        private int count;
+
+        private TopEntities(int limit, Comparator<T> sort) {
+            this.limit = limit;
+            this.sort = sort;
+            this.heap = sort == null ? null : new PriorityQueue<>(Math.max(1, limit), sort.reversed());
+            this.unsorted = sort == null ? new ArrayList<>(limit) : null;
+        }
+
+        private void add(T entity) {
+            count++;
+            if (limit == 0) {
+                return;
+            }
+
+            if (sort == null) {
+                if (unsorted.size() < limit) {
+                    unsorted.add(entity);
+                }
+            }
+            else if (heap.size() < limit) {
+                heap.add(entity);
+            }
+            else if (sort.compare(entity, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(entity);
+            }
+        }
+
+        private void merge(TopEntities<T> other) {
+            Collection<T> retained = other.sort == null ? other.unsorted : other.heap;
+            retained.forEach(this::add);
+            count += other.count - retained.size();
+        }
+
+        private List<T> toList() {
+            if (sort == null) {
+                return unsorted;
+            }
+
+            List<T> result = new ArrayList<>(heap);
+            result.sort(sort);
+
+            return result;
+        }
+    }
+
+    /**
+     * Latest snapshot of one sort and its snapshots retained for pinned reads.
+     * Snapshots are built under the build lock and retained under the retention lock of the storage.
+     */
+    private static class SnapshotHistory {
+        private final ReentrantLock buildLock = new ReentrantLock();
+        private volatile Snapshot latest;
+        private ConcurrentHashMap<Long, Snapshot> retained = new ConcurrentHashMap<>();
+
+        private Snapshot get(long version) {
+            Snapshot latestSnapshot = latest;
+            return latestSnapshot != null && latestSnapshot.getVersion() == version
+                    ? latestSnapshot
+                    : retained.get(version);
+        }
+    }
+
+    /**
+     * Events of committed writes of one type and lock of their publisher.
+     */
+    private static class EventQueue {
+        private final ConcurrentLinkedQueue<List<EntityEvent>> events = new ConcurrentLinkedQueue<>();
+        private final ReentrantLock publishLock = new ReentrantLock();
+    }
+
+    /**
+     * Snapshot retained for pinned reads together with its history.
+     */
+    private static class RetainedSnapshot {
+        private final SnapshotHistory history;
+        private final Snapshot snapshot;
+
+        private RetainedSnapshot(SnapshotHistory history, Snapshot snapshot) {
+            this.history = history;
+            this.snapshot = snapshot;
+        }
     }
 }
@@ -0,0 +1,277 @@
+package com.widget.storage;
+
+import com.widget.storage.abstraction.BaseEntity;
+import com.widget.storage.abstraction.IStorage;
+import com.widget.storage.contract.PageRequest;
+import com.widget.storage.contract.PageResponse;
+import com.widget.storage.contract.Snapshot;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Storage decorator which records latency of every operation as storage.operations timer
+ * tagged by operation and entity type, and count of entities of every used type as storage.entities gauge.
+ * Timers publish histograms, so percentiles can be aggregated by the monitoring system.
+ */
+@Primary
+@Service
+public class MeteredStorage implements IStorage {
+    @Autowired
+    private InMemoryStorage storage;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private ConcurrentHashMap<String, Timer> timers = new ConcurrentHashMap<>();
+    private Set<Class> countedTypes = ConcurrentHashMap.newKeySet();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends BaseEntity> T save(T obj) {
+        return record("save", obj.getClass(), () -> storage.save(obj));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends BaseEntity> List saveAll(List<T> objs) {
+        return record("saveAll", objs.isEmpty() ? null : objs.get(0).getClass(), () -> storage.saveAll(objs));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends BaseEntity> List saveAll(List<T> objs, ObjIntConsumer<EntityRejectedException> rejectionHandler) {
+        return record(
+                "saveAll",
+                objs.isEmpty() ? null : objs.get(0).getClass(),
+                () -> storage.saveAll(objs, rejectionHandler));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends BaseEntity> T update(T obj) throws EntityNotFoundException {
+        long start = System.nanoTime();
+        try {
+            return storage.update(obj);
+        }
+        finally {
+            getTimer("update", obj.getClass()).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends BaseEntity> List<T> updateAll(List<T> objs) {
+        return record("updateAll", objs.isEmpty() ? null : objs.get(0).getClass(), () -> storage.updateAll(objs));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends BaseEntity> List<T> updateAll(
+            List<T> objs,
+            ObjIntConsumer<EntityRejectedException> rejectionHandler) {
+        return record(
+                "updateAll",
+                objs.isEmpty() ? null : objs.get(0).getClass(),
+                () -> storage.updateAll(objs, rejectionHandler));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends BaseEntity> Optional<T> findById(Class<T> type, UUID id) {
+        return record("findById", type, () -> storage.findById(type, id));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends BaseEntity> List findAll(Class<T> type, Comparator<T> sort) {
+        return record("findAll", type, () -> storage.findAll(type, sort));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends BaseEntity> List findAll(Class<T> type, Predicate<T> filterPredicate, Comparator<T> sort) {
+        return record("findAll", type, () -> storage.findAll(type, filterPredicate, sort));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends BaseEntity> PageResponse findAll(Class<T> type, PageRequest pageRequest, Comparator<T> sort) {
+        return record("findPage", type, () -> storage.findAll(type, pageRequest, sort));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends BaseEntity> PageResponse findAll(
+            Class<T> type,
+            Predicate<T> filterPredicate,
+            PageRequest pageRequest,
+            Comparator<T> sort) {
+        return record("findPage", type, () -> storage.findAll(type, filterPredicate, pageRequest, sort));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends BaseEntity> List findAfter(Class<T> type, T after, int limit, Comparator<T> sort) {
+        return record("findAfter", type, () -> storage.findAfter(type, after, limit, sort));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends BaseEntity> Snapshot<T> snapshot(
+            Class<T> type,
+            String sortName,
+            Comparator<T> sort,
+            Long version) {
+        return record("snapshot", type, () -> storage.snapshot(type, sortName, sort, version));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteById(Class type, UUID id) throws EntityNotFoundException {
+        long start = System.nanoTime();
+        try {
+            storage.deleteById(type, id);
+        }
+        finally {
+            getTimer("deleteById", type).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void delete(BaseEntity obj) throws EntityNotFoundException {
+        long start = System.nanoTime();
+        try {
+            storage.delete(obj);
+        }
+        finally {
+            getTimer("delete", obj.getClass()).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteAll(Class type) {
+        record("deleteAll", type, () -> {
+            storage.deleteAll(type);
+            return null;
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<UUID> deleteAll(Class type, List<UUID> ids) {
+        return record("deleteAll", type, () -> storage.deleteAll(type, ids));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean exists(Class type, UUID id) {
+        return record("exists", type, () -> storage.exists(type, id));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int count(Class type) {
+        return storage.count(type);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getVersion(Class type) {
+        return storage.getVersion(type);
+    }
+
+    /**
+     * Executes operation and records its duration.
+     * @param operation Operation name.
+     * @param type Entity type, may be null.
+     * @param action Operation.
+     */
+    private <R> R record(String operation, Class type, Supplier<R> action) {
+        long start = System.nanoTime();
+        try {
+            return action.get();
+        }
+        finally {
+            getTimer(operation, type).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Returns timer of operation on entity type and starts counting entities of the type.
+     * @param operation Operation name.
+     * @param type Entity type, may be null.
+     */
+    private Timer getTimer(String operation, Class type) {
+        String typeName = type == null ? "none" : type.getSimpleName();
+
+        return timers.computeIfAbsent(operation + ":" + typeName, x -> {
+            if (type != null && countedTypes.add(type)) {
+                Gauge.builder("storage.entities", storage, s -> s.count(type))
+                        .description("Count of stored entities")
+                        .tag("type", typeName)
+                        .register(meterRegistry);
+            }
+
+            return Timer.builder("storage.operations")
+                    .description("Latency of storage operations")
+                    .tag("operation", operation)
+                    .tag("type", typeName)
+                    .publishPercentileHistogram()
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry);
+        });
+    }
+}
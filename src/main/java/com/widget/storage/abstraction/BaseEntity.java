@@ -5,11 +5,23 @@ import lombok.Setter;
 
 @Getter
 @Setter
-public abstract class BaseEntity<T> {
+public abstract class BaseEntity<T> implements Cloneable {
     private T id;
 
     /**
      * Generates new identifier for entity.
      */
     public T generateNewId() { return null; };
+
+    /**
+     * Returns shallow copy of entity.
+     */
+    public BaseEntity<T> copy() {
+        try {
+            return (BaseEntity<T>) super.clone();
+        }
+        catch (CloneNotSupportedException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
 }
@@ -0,0 +1,24 @@
+package com.widget.storage.abstraction;
+
+import com.widget.storage.contract.EntityEvent;
+
+import java.util.List;
+
+/**
+ * Describes bus which delivers committed storage changes to listeners.
+ */
+public interface IEventBus {
+    /**
+     * Checks whether there are listeners, so events have to be created.
+     */
+    boolean hasListeners();
+
+    /**
+     * Publishes events of a single write, including writes made by interceptors.
+     * Events of the write are delivered to listener in the same batch.
+     * Executes after the lock of entity type is released, one write of the type at a time in write order,
+     * so waiting for listeners doesn't block writes.
+     * @param events Events in the order of writes.
+     */
+    void publish(List<EntityEvent> events);
+}
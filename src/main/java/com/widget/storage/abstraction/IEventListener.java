@@ -0,0 +1,18 @@
+package com.widget.storage.abstraction;
+
+import com.widget.storage.contract.EntityEvent;
+
+import java.util.List;
+
+/**
+ * Describes asynchronous listener of committed storage changes.
+ * Unlike interceptors, listeners don't delay writes and can't change written entities.
+ */
+public interface IEventListener {
+    /**
+     * Handles batch of events in the order of writes. Executes on the dedicated thread of listener.
+     * Listener must not wait for storage writes, they may wait for the listener when the event buffer is full.
+     * @param events Events.
+     */
+    void onEvents(List<EntityEvent> events);
+}
@@ -0,0 +1,32 @@
+package com.widget.storage.abstraction;
+
+/**
+ * Describes secondary index which is kept up to date by storage.
+ */
+public interface IIndex<T extends BaseEntity> {
+    /**
+     * Returns type of indexed entities.
+     */
+    Class<T> getEntityType();
+
+    /**
+     * Adds entity to index or re-indexes it if it is already present.
+     * @param entity Entity.
+     * @return Change of other entities made by the index, which is published with the event of the write,
+     * or null if other entities are not changed.
+     */
+    Object add(T entity);
+
+    /**
+     * Removes entity from index.
+     * Indexed fields of passed entity may be already modified, so implementations should find
+     * entity by its identifier.
+     * @param entity Entity.
+     */
+    void remove(T entity);
+
+    /**
+     * Removes all entities from index.
+     */
+    void clear();
+}
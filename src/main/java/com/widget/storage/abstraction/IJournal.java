@@ -0,0 +1,35 @@
+package com.widget.storage.abstraction;
+
+import com.widget.storage.contract.JournalRecord;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Describes journal of storage changes.
+ */
+public interface IJournal {
+    /**
+     * Replays persisted records and starts journaling.
+     * @param consumer Consumer of persisted records.
+     * @param snapshotSource Source of copies of all stored entities used for compaction.
+     */
+    void open(Consumer<JournalRecord> consumer, Supplier<Collection<BaseEntity>> snapshotSource);
+
+    /**
+     * Appends record to the journal. Executes under the lock of entity type.
+     * @param record Record to append.
+     * @return Position of the journal after the record.
+     * @throws java.io.UncheckedIOException Journal failed to write preceding records.
+     */
+    long append(JournalRecord record);
+
+    /**
+     * Waits until records up to the position are durable, when journal is synchronous.
+     * Executes after the lock of entity type is released, so writers wait for disk without blocking each other.
+     * @param position Position returned by append.
+     * @throws java.io.UncheckedIOException Journal failed to write records.
+     */
+    void awaitDurable(long position);
+}
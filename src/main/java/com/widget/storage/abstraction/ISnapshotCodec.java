@@ -0,0 +1,31 @@
+package com.widget.storage.abstraction;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Describes binary snapshot format of entity type.
+ * @param <T> Entity type.
+ */
+public interface ISnapshotCodec<T extends BaseEntity> {
+    /**
+     * Returns type of entities in snapshot.
+     */
+    Class<T> getEntityType();
+
+    /**
+     * Writes entities to the snapshot file.
+     * @param path File path.
+     * @param entities Entities to write.
+     */
+    void write(Path path, Collection<T> entities) throws IOException;
+
+    /**
+     * Reads entities from the snapshot file.
+     * @param path File path.
+     * @param consumer Consumer of entities.
+     */
+    void read(Path path, Consumer<T> consumer) throws IOException;
+}
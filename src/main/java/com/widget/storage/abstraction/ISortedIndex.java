@@ -0,0 +1,26 @@
+package com.widget.storage.abstraction;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Describes index which keeps entities in the order of its comparator.
+ */
+public interface ISortedIndex<T extends BaseEntity> extends IIndex<T> {
+    /**
+     * Returns comparator which defines order of the index. It orders entities strictly.
+     */
+    Comparator<T> getComparator();
+
+    /**
+     * Returns entities which follow passed one in the order of the index.
+     * @param after Entity to start after, null to start from the first one.
+     * @param limit Max count of entities.
+     */
+    List<T> findAfter(T after, int limit);
+
+    /**
+     * Returns copies of all entities in the order of the index, which are taken at once.
+     */
+    List<T> copyAll();
+}
@@ -2,12 +2,15 @@ package com.widget.storage.abstraction;
 
 import com.widget.storage.contract.PageRequest;
 import com.widget.storage.EntityNotFoundException;
+import com.widget.storage.EntityRejectedException;
 import com.widget.storage.contract.PageResponse;
+import com.widget.storage.contract.Snapshot;
 
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.ObjIntConsumer;
 import java.util.function.Predicate;
 
 public interface IStorage {
@@ -18,11 +21,46 @@ public interface IStorage {
     <T extends BaseEntity> T save(T obj);
 
     /**
-     * Saves collection of entities in storage.
+     * Saves collection of entities in storage. Writes of the same type from other threads wait for the whole batch.
+     * Rejection by interceptors stops the batch, entities saved before the rejected one stay saved.
      * @param objs Entities collection.
      */
     <T extends BaseEntity> List saveAll(List<T> objs);
 
+    /**
+     * Saves collection of entities in one batch and skips entities rejected by interceptors,
+     * the rest of the batch is saved. Writes of the same type from other threads wait for the whole batch.
+     * @param objs Entities collection.
+     * @param rejectionHandler Handler of rejection and position of rejected entity in the batch.
+     */
+    <T extends BaseEntity> List saveAll(List<T> objs, ObjIntConsumer<EntityRejectedException> rejectionHandler);
+
+    /**
+     * Updates existing entity. Existence is checked under the write lock, so entity deleted concurrently
+     * isn't created again.
+     * @param obj Entity to update.
+     * @throws EntityNotFoundException Entity doesn't exist.
+     */
+    <T extends BaseEntity> T update(T obj) throws EntityNotFoundException;
+
+    /**
+     * Updates existing entities in one batch and skips entities which don't exist.
+     * Existence is checked under the write lock, writes of the same type from other threads wait for the whole batch.
+     * Rejection by interceptors stops the batch, entities updated before the rejected one stay updated.
+     * @param objs Entities to update.
+     * @return Updated entities, null in place of entities which don't exist.
+     */
+    <T extends BaseEntity> List<T> updateAll(List<T> objs);
+
+    /**
+     * Updates existing entities in one batch and skips entities which don't exist or are rejected by interceptors.
+     * Existence is checked under the write lock, writes of the same type from other threads wait for the whole batch.
+     * @param objs Entities to update.
+     * @param rejectionHandler Handler of rejection and position of rejected entity in the batch.
+     * @return Updated entities, null in place of entities which don't exist or are rejected.
+     */
+    <T extends BaseEntity> List<T> updateAll(List<T> objs, ObjIntConsumer<EntityRejectedException> rejectionHandler);
+
     /**
      * Returns entity by its type and identifier.
      * @param type Entity type.
@@ -66,6 +104,27 @@ public interface IStorage {
         PageRequest pageRequest,
         Comparator<T> sort);
 
+    /**
+     * Returns entities which follow passed one in sort order, so pages can be read by keyset instead of offset.
+     * Registered sorted index with the same comparator is used when it exists.
+     * @param type Entity type.
+     * @param after Entity to start after, null to start from the first one.
+     * @param limit Max count of entities.
+     * @param sort Comparator to sort. It has to order entities strictly.
+     */
+    <T extends BaseEntity> List findAfter(Class<T> type, T after, int limit, Comparator<T> sort);
+
+    /**
+     * Returns sorted snapshot of entities by type.
+     * Snapshot of passed version is returned while it is retained, otherwise snapshot of the current version.
+     * Snapshots are cached per sort name, registered sorted index with the same comparator is copied without sorting.
+     * @param type Entity type.
+     * @param sortName Stable name of the sort, which identifies cached snapshots.
+     * @param sort Comparator to sort.
+     * @param version Version of snapshot to pin to, may be null.
+     */
+    <T extends BaseEntity> Snapshot<T> snapshot(Class<T> type, String sortName, Comparator<T> sort, Long version);
+
     /**
      * Deletes entity by its type and identifier.
      * @param type Entity type.
@@ -86,10 +145,32 @@ public interface IStorage {
      */
     void deleteAll(Class type);
 
+    /**
+     * Deletes entities by type and identifiers.
+     * @param type Entity type.
+     * @param ids Identifiers of entities to delete.
+     * @return Identifiers of deleted entities, missing ones are skipped.
+     */
+    List<UUID> deleteAll(Class type, List<UUID> ids);
+
     /**
      * Check whether entity exists in storage.
      * @param type Entity type.
      * @param id Entity identifier.
      */
     boolean exists(Class type, UUID id);
+
+    /**
+     * Returns count of entities by type.
+     * @param type Entity type.
+     */
+    int count(Class type);
+
+    /**
+     * Returns version of the entity type which is incremented on every write.
+     * The version is incremented after interceptors have handled the write,
+     * so state derived by interceptors is never older than the version.
+     * @param type Entity type.
+     */
+    long getVersion(Class type);
 }
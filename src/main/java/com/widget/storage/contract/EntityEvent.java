@@ -0,0 +1,99 @@
+package com.widget.storage.contract;
+
+import com.widget.storage.abstraction.BaseEntity;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Committed change of storage state. Events hold copies of entity states, so they don't change after the event.
+ */
+@Getter
+@AllArgsConstructor
+public class EntityEvent {
+    private Operation operation;
+    private Class type;
+    private UUID id;
+    private BaseEntity entity;
+    private BaseEntity previousEntity;
+    private long version;
+
+    /**
+     * Changes of other entities made by indexes while the entity was indexed, they precede the write.
+     */
+    private List<Object> indexChanges;
+
+    /**
+     * Creates event of created entity.
+     * @param entity Copy of created entity.
+     * @param indexChanges Changes of other entities made by indexes.
+     * @param version Version of entity type after the write.
+     */
+    public static EntityEvent create(BaseEntity entity, List<Object> indexChanges, long version) {
+        return new EntityEvent(
+                Operation.CREATE,
+                entity.getClass(),
+                (UUID) entity.getId(),
+                entity,
+                null,
+                version,
+                indexChanges);
+    }
+
+    /**
+     * Creates event of updated entity.
+     * @param entity Copy of updated entity.
+     * @param previousEntity Copy of entity before the update.
+     * @param indexChanges Changes of other entities made by indexes.
+     * @param version Version of entity type after the write.
+     */
+    public static EntityEvent update(
+            BaseEntity entity,
+            BaseEntity previousEntity,
+            List<Object> indexChanges,
+            long version) {
+        return new EntityEvent(
+                Operation.UPDATE,
+                entity.getClass(),
+                (UUID) entity.getId(),
+                entity,
+                previousEntity,
+                version,
+                indexChanges);
+    }
+
+    /**
+     * Creates event of deleted entity.
+     * @param previousEntity Copy of deleted entity.
+     * @param version Version of entity type after the write.
+     */
+    public static EntityEvent delete(BaseEntity previousEntity, long version) {
+        return new EntityEvent(
+                Operation.DELETE,
+                previousEntity.getClass(),
+                (UUID) previousEntity.getId(),
+                null,
+                previousEntity,
+                version,
+                Collections.emptyList());
+    }
+
+    /**
+     * Creates event of deleting all entities of the type.
+     * @param type Entity type.
+     * @param version Version of entity type after the write.
+     */
+    public static EntityEvent deleteAll(Class type, long version) {
+        return new EntityEvent(Operation.DELETE_ALL, type, null, null, null, version, Collections.emptyList());
+    }
+
+    public enum Operation {
+        CREATE,
+        UPDATE,
+        DELETE,
+        DELETE_ALL
+    }
+}
@@ -0,0 +1,50 @@
+package com.widget.storage.contract;
+
+import com.widget.storage.abstraction.BaseEntity;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+/**
+ * Journaled change of storage state. Records hold full state of entity, so replaying them is idempotent.
+ */
+@Getter
+@AllArgsConstructor
+public class JournalRecord {
+    private Operation operation;
+    private Class type;
+    private UUID id;
+    private BaseEntity entity;
+
+    /**
+     * Creates record of saved entity.
+     * @param entity Saved entity.
+     */
+    public static JournalRecord save(BaseEntity entity) {
+        return new JournalRecord(Operation.SAVE, entity.getClass(), (UUID) entity.getId(), entity);
+    }
+
+    /**
+     * Creates record of deleted entity.
+     * @param type Entity type.
+     * @param id Entity identifier.
+     */
+    public static JournalRecord delete(Class type, UUID id) {
+        return new JournalRecord(Operation.DELETE, type, id, null);
+    }
+
+    /**
+     * Creates record of deleting all entities of the type.
+     * @param type Entity type.
+     */
+    public static JournalRecord deleteAll(Class type) {
+        return new JournalRecord(Operation.DELETE_ALL, type, null, null);
+    }
+
+    public enum Operation {
+        SAVE,
+        DELETE,
+        DELETE_ALL
+    }
+}
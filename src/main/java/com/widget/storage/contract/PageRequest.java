@@ -18,8 +18,28 @@ public class PageRequest {
     @Max(500)
     private Integer perPage;
 
+    /**
+     * Version of snapshot to read page from. Pages of the same snapshot don't change with concurrent writes.
+     */
+    private Long snapshot;
+
+    /**
+     * Cursor of the page to read, returned with the previous page. Replaces page number when present.
+     */
+    private String cursor;
+
+    /**
+     * Whether total count is required for page read by cursor.
+     */
+    private boolean withTotal;
+
     public PageRequest() {
         page = 0;
         perPage = 10;
     }
+
+    public PageRequest(Integer page, Integer perPage) {
+        this.page = page;
+        this.perPage = perPage;
+    }
 }
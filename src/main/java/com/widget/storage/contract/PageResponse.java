@@ -1,6 +1,6 @@
 package com.widget.storage.contract;
 
-import com.widget.storage.abstraction.BaseEntity;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
@@ -13,7 +13,22 @@ import java.util.List;
 @AllArgsConstructor
 public class PageResponse<T> {
     private List<T> records;
-    private int total;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer total;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long snapshot;
+
+    /**
+     * Cursor of the next page.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String next;
+
+    public PageResponse(List<T> records, Integer total) {
+        this(records, total, null, null);
+    }
 
     /**
      * Creates paged response based on records collection.
@@ -28,6 +43,18 @@ public class PageResponse<T> {
             : new PageResponse(records.subList(pageStartIndex, pageEndIndex), records.size());
     }
 
+    /**
+     * Creates paged response based on snapshot.
+     * @param snapshot Snapshot.
+     * @param pageRequest Page request.
+     */
+    public static PageResponse create(Snapshot snapshot, PageRequest pageRequest) {
+        PageResponse response = create(snapshot.getRecords(), pageRequest);
+        response.setSnapshot(snapshot.getVersion());
+
+        return response;
+    }
+
     /**
      * Returns empty page request.
      * @return
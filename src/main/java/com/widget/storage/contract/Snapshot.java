@@ -0,0 +1,16 @@
+package com.widget.storage.contract;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Immutable sorted view of entities of one type taken at some storage version.
+ */
+@Getter
+@AllArgsConstructor
+public class Snapshot<T> {
+    private long version;
+    private List<T> records;
+}
@@ -0,0 +1,271 @@
+package com.widget.storage.events;
+
+import com.widget.storage.abstraction.IEventBus;
+import com.widget.storage.abstraction.IEventListener;
+import com.widget.storage.contract.EntityEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Event bus over the ring buffer of preallocated size shared by all listeners.
+ * Writers claim contiguous sequences of the ring for events of a write and publish events into their slots,
+ * every listener has its own thread which reads published events in batches of whole writes
+ * and advances its own sequence. Slot is reused only after all listeners
+ * have read it, so the slowest listener either blocks publishing writers or makes them drop events, depending on
+ * backpressure. The last listener to read a slot clears it before advancing, so the ring doesn't retain events
+ * and entities of old writes. Storage publishes after releasing the write lock, so blocked publisher doesn't block other writes.
+ * Failures of listeners are logged and counted, the failed batch is skipped.
+ * Idle listener threads sleep for a millisecond between polls, so events are delivered with up to that delay.
+ */
+@Slf4j
+@Component
+public class RingBufferEventBus implements IEventBus {
+    private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long FULL_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final EntityEvent[] entries;
+    private final boolean[] groupEnds;
+    private final AtomicLongArray publishedSequences;
+    // Count of listeners which haven't read the event of the slot yet.
+    private final AtomicIntegerArray pendingReads;
+    private final int mask;
+    private final int maxBatchSize;
+    private final Backpressure backpressure;
+    private final Counter droppedEvents;
+    private final Counter failedBatches;
+
+    private final AtomicLong claimedSequence = new AtomicLong(-1);
+    private List<IEventListener> listeners = new ArrayList<>();
+    private List<Consumer> consumers = new ArrayList<>();
+    private volatile boolean running;
+
+    /**
+     * Creates event bus.
+     * @param bufferSize Count of slots in the ring, it's rounded up to the power of two.
+     * @param maxBatchSize Max count of events passed to listener at once.
+     * @param backpressure Behavior of writers when the ring is full.
+     * @param meterRegistry Registry of dropped events and failed batches meters.
+     */
+    @Autowired
+    public RingBufferEventBus(
+            @Value("${storage.events.buffer-size:8192}") int bufferSize,
+            @Value("${storage.events.max-batch-size:256}") int maxBatchSize,
+            @Value("${storage.events.backpressure:block}") Backpressure backpressure,
+            MeterRegistry meterRegistry) {
+        int capacity = Integer.highestOneBit(Math.max(bufferSize, 2) - 1) << 1;
+        this.entries = new EntityEvent[capacity];
+        this.groupEnds = new boolean[capacity];
+        this.publishedSequences = new AtomicLongArray(capacity);
+        this.pendingReads = new AtomicIntegerArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            publishedSequences.set(i, -1);
+        }
+        this.mask = capacity - 1;
+        this.maxBatchSize = maxBatchSize;
+        this.backpressure = backpressure;
+        this.droppedEvents = Counter
+                .builder("storage.events.dropped")
+                .description("Events dropped because the event buffer was full")
+                .register(meterRegistry);
+        this.failedBatches = Counter
+                .builder("storage.events.failures")
+                .description("Event batches which listeners failed to handle")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Sets listeners of events.
+     * @param listeners Event listeners.
+     */
+    @Autowired(required=false)
+    public void setListeners(List<IEventListener> listeners) {
+        this.listeners = listeners;
+    }
+
+    /**
+     * Starts thread of every listener.
+     */
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (IEventListener listener : listeners) {
+            Consumer consumer = new Consumer(listener);
+            consumer.thread = new Thread(consumer, "event-listener-" + consumers.size());
+            consumer.thread.setDaemon(true);
+            consumers.add(consumer);
+        }
+        consumers.forEach(x -> x.thread.start());
+    }
+
+    /**
+     * Stops listener threads after they have handled all published events.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Consumer consumer : consumers) {
+            consumer.thread.join();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasListeners() {
+        return !consumers.isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     * Events of the write are put into contiguous slots. Writes which don't fit into the ring are split into parts.
+     */
+    @Override
+    public void publish(List<EntityEvent> events) {
+        if (consumers.isEmpty()) {
+            return;
+        }
+
+        for (int start = 0; start < events.size(); start += entries.length) {
+            publishGroup(events.subList(start, Math.min(start + entries.length, events.size())));
+        }
+    }
+
+    /**
+     * Claims contiguous slots for the group of events and publishes them.
+     * @param events Events which fit into the ring.
+     */
+    private void publishGroup(List<EntityEvent> events) {
+        int count = events.size();
+        long lastSequence;
+        if (backpressure == Backpressure.DROP) {
+            long claimed;
+            do {
+                claimed = claimedSequence.get();
+                lastSequence = claimed + count;
+                if (lastSequence - entries.length > getMinConsumedSequence()) {
+                    droppedEvents.increment(count);
+                    return;
+                }
+            } while (!claimedSequence.compareAndSet(claimed, lastSequence));
+        }
+        else {
+            lastSequence = claimedSequence.addAndGet(count);
+            while (lastSequence - entries.length > getMinConsumedSequence()) {
+                LockSupport.parkNanos(FULL_WAIT_NANOS);
+            }
+        }
+
+        long sequence = lastSequence - count + 1;
+        for (EntityEvent event : events) {
+            int slot = (int) sequence & mask;
+            entries[slot] = event;
+            groupEnds[slot] = sequence == lastSequence;
+            pendingReads.set(slot, consumers.size());
+            publishedSequences.set(slot, sequence);
+            sequence++;
+        }
+    }
+
+    /**
+     * Returns the last sequence which is read by all listeners.
+     */
+    private long getMinConsumedSequence() {
+        long result = Long.MAX_VALUE;
+        for (Consumer consumer : consumers) {
+            result = Math.min(result, consumer.consumedSequence.get());
+        }
+
+        return result;
+    }
+
+    /**
+     * Behavior of writers when the ring is full.
+     */
+    public enum Backpressure {
+        /**
+         * Writers wait until the slowest listener frees a slot.
+         */
+        BLOCK,
+        /**
+         * Events which don't fit are dropped and counted.
+         */
+        DROP
+    }
+
+    /**
+     * Reader of the ring which passes events to the listener.
+     */
+    private class Consumer implements Runnable {
+        final IEventListener listener;
+        final AtomicLong consumedSequence = new AtomicLong(-1);
+        Thread thread;
+
+        Consumer(IEventListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                boolean stopping = !running;
+                long next = consumedSequence.get() + 1;
+                long available = next - 1;
+                long end = next - 1;
+                while (publishedSequences.get((int) (end + 1) & mask) == end + 1) {
+                    end++;
+                    if (groupEnds[(int) end & mask]) {
+                        available = end;
+                        if (available - next + 1 >= maxBatchSize) {
+                            break;
+                        }
+                    }
+                }
+
+                if (available < next) {
+                    if (stopping) {
+                        return;
+                    }
+                    LockSupport.parkNanos(IDLE_WAIT_NANOS);
+                    continue;
+                }
+
+                List<EntityEvent> batch = new ArrayList<>((int) (available - next + 1));
+                for (long sequence = next; sequence <= available; sequence++) {
+                    batch.add(entries[(int) sequence & mask]);
+                }
+
+                try {
+                    listener.onEvents(batch);
+                }
+                catch (RuntimeException ex) {
+                    failedBatches.increment();
+                    log.error("Event listener {} failed to handle {} events", listener, batch.size(), ex);
+                }
+
+                // Slot isn't reused until this listener advances, so the clearing can't erase a newer event.
+                for (long sequence = next; sequence <= available; sequence++) {
+                    int slot = (int) sequence & mask;
+                    if (pendingReads.decrementAndGet(slot) == 0) {
+                        entries[slot] = null;
+                    }
+                }
+                consumedSequence.set(available);
+            }
+        }
+    }
+}
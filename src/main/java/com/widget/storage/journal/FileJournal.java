@@ -0,0 +1,534 @@
+package com.widget.storage.journal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.widget.storage.abstraction.BaseEntity;
+import com.widget.storage.abstraction.IJournal;
+import com.widget.storage.abstraction.ISnapshotCodec;
+import com.widget.storage.contract.JournalRecord;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file journal with group commit.
+ * Writers encode records into the shared buffer, background thread writes the buffer to the current segment
+ * and forces it to disk once per flush interval. When segment grows over the compaction threshold, journal
+ * switches to the new segment, writes snapshot of all entities and deletes older segments and snapshots.
+ * Records are framed with length and CRC32, so torn tail of the segment is ignored on recovery.
+ * Entity types with registered snapshot codec are written to separate snapshot files in codec format.
+ * Failed write of records is fatal: records written after it would follow a gap, so the journal rejects further
+ * appends and wakes writers which wait for durability with the failure. Failed compaction is logged and the journal
+ * keeps appending to the new segment, which is replayed after the previous snapshot.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "storage.journal.enabled", havingValue = "true")
+public class FileJournal implements IJournal {
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String FILE_SUFFIX = ".log";
+    private static final String CODEC_FILE_SUFFIX = ".bin";
+    private static final int NUMBER_LENGTH = 19;
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+    private static final int MAX_RECORD_SIZE = 1 << 24;
+
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final long flushInterval;
+    private final long compactionThreshold;
+    private final boolean sync;
+
+    private final ReentrantLock segmentLock = new ReentrantLock();
+    private final ReentrantLock bufferLock = new ReentrantLock();
+    private final Condition flushed = bufferLock.newCondition();
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private ByteArrayOutputStream spareBuffer = new ByteArrayOutputStream();
+    private long appendedBytes;
+    private long durableBytes;
+    private volatile IOException failure;
+
+    private final ConcurrentHashMap<String, Class> types = new ConcurrentHashMap<>();
+    private List<ISnapshotCodec> codecs = new ArrayList<>();
+    private ScheduledExecutorService executor;
+    private Supplier<Collection<BaseEntity>> snapshotSource;
+    private FileChannel channel;
+    private long segment;
+
+    /**
+     * Creates journal.
+     * @param objectMapper Mapper of entities.
+     * @param directory Directory of segments and snapshots.
+     * @param flushInterval Interval between batched writes in milliseconds.
+     * @param compactionThreshold Size of segment in bytes which triggers compaction.
+     * @param sync Whether writers wait until their records are forced to disk.
+     */
+    @Autowired
+    public FileJournal(
+            ObjectMapper objectMapper,
+            @Value("${storage.journal.directory:data}") String directory,
+            @Value("${storage.journal.flush-interval:10}") long flushInterval,
+            @Value("${storage.journal.compaction-threshold:67108864}") long compactionThreshold,
+            @Value("${storage.journal.sync:false}") boolean sync) {
+        this.objectMapper = objectMapper;
+        this.directory = Paths.get(directory);
+        this.flushInterval = flushInterval;
+        this.compactionThreshold = compactionThreshold;
+        this.sync = sync;
+    }
+
+    /**
+     * Sets codecs of entity types which are snapshotted in their own format.
+     * @param codecs Snapshot codecs.
+     */
+    @Autowired(required=false)
+    public void setCodecs(List<ISnapshotCodec> codecs) {
+        this.codecs = codecs;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void open(Consumer<JournalRecord> consumer, Supplier<Collection<BaseEntity>> snapshotSource) {
+        this.snapshotSource = snapshotSource;
+
+        try {
+            Files.createDirectories(directory);
+
+            List<Long> snapshots = list(SNAPSHOT_PREFIX);
+            long snapshotSegment = snapshots.isEmpty() ? 0 : snapshots.get(snapshots.size() - 1);
+            if (!snapshots.isEmpty()) {
+                for (ISnapshotCodec codec : codecs) {
+                    Path codecSnapshot = codecFile(snapshotSegment, codec);
+                    if (Files.exists(codecSnapshot)) {
+                        codec.read(codecSnapshot, x -> consumer.accept(JournalRecord.save((BaseEntity) x)));
+                    }
+                }
+                read(file(SNAPSHOT_PREFIX, snapshotSegment), consumer);
+            }
+
+            List<Long> segments = list(SEGMENT_PREFIX);
+            for (long x : segments) {
+                if (x >= snapshotSegment) {
+                    read(file(SEGMENT_PREFIX, x), consumer);
+                }
+            }
+
+            segment = Math.max(snapshotSegment, segments.isEmpty() ? 0 : segments.get(segments.size() - 1)) + 1;
+            channel = openSegment(segment);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(x -> {
+            Thread thread = new Thread(x, "storage-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flushAndCompact, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long append(JournalRecord record) {
+        byte[] frame = encode(record);
+
+        bufferLock.lock();
+        try {
+            if (failure != null) {
+                throw new UncheckedIOException("Journal failed to write records", failure);
+            }
+
+            buffer.write(frame, 0, frame.length);
+            appendedBytes += frame.length;
+
+            return appendedBytes;
+        }
+        finally {
+            bufferLock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void awaitDurable(long position) {
+        if (!sync) {
+            return;
+        }
+
+        bufferLock.lock();
+        try {
+            while (durableBytes < position && failure == null) {
+                flushed.awaitUninterruptibly();
+            }
+            if (durableBytes < position) {
+                throw new UncheckedIOException("Journal failed to write records", failure);
+            }
+        }
+        finally {
+            bufferLock.unlock();
+        }
+    }
+
+    /**
+     * Writes pending records and compacts journal.
+     */
+    public void compact() {
+        segmentLock.lock();
+        try {
+            flush();
+            channel.close();
+            channel = openSegment(++segment);
+
+            Map<Class, List<BaseEntity>> entitiesByType = snapshotSource.get()
+                    .stream()
+                    .collect(Collectors.groupingBy(BaseEntity::getClass));
+            for (ISnapshotCodec codec : codecs) {
+                List<BaseEntity> entities = entitiesByType.remove(codec.getEntityType());
+                codec.write(codecFile(segment, codec), entities == null ? Collections.emptyList() : entities);
+            }
+
+            Path snapshot = file(SNAPSHOT_PREFIX, segment);
+            Path temporarySnapshot = directory.resolve(snapshot.getFileName() + ".tmp");
+            try (FileChannel snapshotChannel = FileChannel.open(
+                    temporarySnapshot,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                OutputStream output = new BufferedOutputStream(Channels.newOutputStream(snapshotChannel), READ_BUFFER_SIZE);
+                for (List<BaseEntity> entities : entitiesByType.values()) {
+                    for (BaseEntity entity : entities) {
+                        output.write(encode(JournalRecord.save(entity)));
+                    }
+                }
+                output.flush();
+                snapshotChannel.force(true);
+            }
+            Files.move(temporarySnapshot, snapshot, StandardCopyOption.ATOMIC_MOVE);
+
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path x : files.collect(Collectors.toList())) {
+                    String name = x.getFileName().toString();
+                    if (name.startsWith(SNAPSHOT_PREFIX) && parseNumber(name, SNAPSHOT_PREFIX) < segment) {
+                        Files.delete(x);
+                    }
+                }
+            }
+            for (long x : list(SEGMENT_PREFIX)) {
+                if (x < segment) {
+                    Files.delete(file(SEGMENT_PREFIX, x));
+                }
+            }
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        finally {
+            segmentLock.unlock();
+        }
+    }
+
+    /**
+     * Writes pending records and closes journal.
+     */
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        if (executor == null) {
+            return;
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        segmentLock.lock();
+        try {
+            flush();
+            channel.close();
+        }
+        finally {
+            segmentLock.unlock();
+        }
+        executor = null;
+    }
+
+    /**
+     * Flushes pending records and starts compaction when current segment grows over threshold.
+     * Failures are logged, so they don't cancel the schedule.
+     */
+    private void flushAndCompact() {
+        if (failure != null) {
+            return;
+        }
+
+        segmentLock.lock();
+        try {
+            try {
+                flush();
+            }
+            catch (IOException ex) {
+                log.error("Failed to write journal records, journal rejects further writes", ex);
+                return;
+            }
+
+            try {
+                if (channel.size() >= compactionThreshold) {
+                    compact();
+                }
+            }
+            catch (IOException | RuntimeException ex) {
+                log.error("Failed to compact journal", ex);
+            }
+        }
+        finally {
+            segmentLock.unlock();
+        }
+    }
+
+    /**
+     * Writes all pending records to the current segment in one batch and forces them to disk.
+     * Failure is kept and passed to waiting writers, later calls fail with it without writing.
+     */
+    private void flush() throws IOException {
+        ByteArrayOutputStream pending;
+        long position;
+
+        bufferLock.lock();
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+
+            pending = buffer;
+            buffer = spareBuffer;
+            spareBuffer = pending;
+            position = appendedBytes;
+        }
+        finally {
+            bufferLock.unlock();
+        }
+
+        try {
+            if (pending.size() > 0) {
+                pending.writeTo(Channels.newOutputStream(channel));
+                pending.reset();
+                channel.force(false);
+            }
+        }
+        catch (IOException ex) {
+            bufferLock.lock();
+            try {
+                failure = ex;
+                flushed.signalAll();
+            }
+            finally {
+                bufferLock.unlock();
+            }
+
+            throw ex;
+        }
+
+        bufferLock.lock();
+        try {
+            durableBytes = position;
+            flushed.signalAll();
+        }
+        finally {
+            bufferLock.unlock();
+        }
+    }
+
+    /**
+     * Reads records of the file until its end or the first corrupted record.
+     * @param path File path.
+     * @param consumer Consumer of records.
+     */
+    private void read(Path path, Consumer<JournalRecord> consumer) throws IOException {
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path), READ_BUFFER_SIZE))) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] body;
+                long checksum;
+                try {
+                    int length = input.readInt();
+                    if (length <= 0 || length > MAX_RECORD_SIZE) {
+                        return;
+                    }
+
+                    checksum = input.readInt() & 0xFFFFFFFFL;
+                    body = new byte[length];
+                    input.readFully(body);
+                }
+                catch (EOFException ex) {
+                    return;
+                }
+
+                crc.reset();
+                crc.update(body, 0, body.length);
+                if (crc.getValue() != checksum) {
+                    return;
+                }
+
+                consumer.accept(decode(body));
+            }
+        }
+    }
+
+    /**
+     * Encodes record into the frame of length, checksum and body.
+     * @param record Record to encode.
+     */
+    private byte[] encode(JournalRecord record) {
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+            DataOutputStream output = new DataOutputStream(body);
+            output.writeInt(0);
+            output.writeInt(0);
+            output.writeByte(record.getOperation().ordinal());
+            output.writeUTF(record.getType().getName());
+
+            switch (record.getOperation()) {
+                case SAVE:
+                    objectMapper.writeValue((OutputStream) output, record.getEntity());
+                    break;
+                case DELETE:
+                    output.writeLong(record.getId().getMostSignificantBits());
+                    output.writeLong(record.getId().getLeastSignificantBits());
+                    break;
+                default:
+                    break;
+            }
+
+            byte[] frame = body.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(frame, 8, frame.length - 8);
+            writeInt(frame, 0, frame.length - 8);
+            writeInt(frame, 4, (int) crc.getValue());
+
+            return frame;
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Decodes record from the body of frame.
+     * @param body Frame body.
+     */
+    private JournalRecord decode(byte[] body) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(body));
+        JournalRecord.Operation operation = JournalRecord.Operation.values()[input.readByte()];
+        Class type = getType(input.readUTF());
+
+        switch (operation) {
+            case SAVE:
+                return JournalRecord.save(objectMapper.readValue((InputStream) input, (Class<BaseEntity>) type));
+            case DELETE:
+                return JournalRecord.delete(type, new UUID(input.readLong(), input.readLong()));
+            default:
+                return JournalRecord.deleteAll(type);
+        }
+    }
+
+    /**
+     * Returns entity type by its name.
+     * @param name Class name.
+     */
+    private Class getType(String name) {
+        return types.computeIfAbsent(name, x -> {
+            try {
+                return Class.forName(x, true, getClass().getClassLoader());
+            }
+            catch (ClassNotFoundException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+    }
+
+    /**
+     * Opens segment for appending.
+     * @param number Segment number.
+     */
+    private FileChannel openSegment(long number) throws IOException {
+        return FileChannel.open(
+                file(SEGMENT_PREFIX, number),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Returns sorted numbers of files with prefix.
+     * @param prefix File prefix.
+     */
+    private List<Long> list(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .map(x -> x.getFileName().toString())
+                    .filter(x -> x.startsWith(prefix) && x.endsWith(FILE_SUFFIX))
+                    .map(x -> parseNumber(x, prefix))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Returns path of file with prefix and number.
+     * @param prefix File prefix.
+     * @param number File number.
+     */
+    private Path file(String prefix, long number) {
+        return directory.resolve(String.format("%s%0" + NUMBER_LENGTH + "d%s", prefix, number, FILE_SUFFIX));
+    }
+
+    /**
+     * Returns path of snapshot file in codec format.
+     * @param number Snapshot number.
+     * @param codec Snapshot codec.
+     */
+    private Path codecFile(long number, ISnapshotCodec codec) {
+        return directory.resolve(String.format(
+                "%s%0" + NUMBER_LENGTH + "d.%s%s", SNAPSHOT_PREFIX, number, codec.getEntityType().getName(), CODEC_FILE_SUFFIX));
+    }
+
+    /**
+     * Returns number of file with prefix.
+     * @param name File name.
+     * @param prefix File prefix.
+     */
+    private static long parseNumber(String name, String prefix) {
+        return Long.parseLong(name.substring(prefix.length(), prefix.length() + NUMBER_LENGTH));
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+}
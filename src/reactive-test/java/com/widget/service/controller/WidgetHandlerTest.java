@@ -0,0 +1,284 @@
+package com.widget.service.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.widget.service.contract.WidgetRequest;
+import com.widget.service.mapping.WidgetMapper;
+import com.widget.service.model.Widget;
+import com.widget.service.service.WidgetService;
+import com.widget.storage.abstraction.IStorage;
+import com.widget.storage.contract.PageRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "spring.main.web-application-type=reactive")
+@AutoConfigureWebTestClient
+class WidgetHandlerTest {
+    @Autowired
+    private IStorage storage;
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private WidgetService widgetService;
+
+    @Autowired
+    private WidgetMapper mapper;
+
+    @BeforeEach
+    public void init() {
+        storage.deleteAll(Widget.class);
+    }
+
+    @Test
+    void getAll_RequestWithCurrentETag_ReturnsNotModified() {
+        // given
+        storage.save(getWidget());
+        String eTag = webTestClient
+                .get()
+                .uri("/widgets")
+                .exchange()
+                .returnResult(String.class)
+                .getResponseHeaders()
+                .getETag();
+
+        // when
+        EntityExchangeResult<byte[]> result = webTestClient
+                .get()
+                .uri("/widgets")
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectBody()
+                .returnResult();
+
+        // then
+        assertEquals(result.getStatus().value(), 304);
+        assertNull(result.getResponseBody());
+        assertEquals(result.getResponseHeaders().getETag(), eTag);
+    }
+
+    @Test
+    void getById_RequestWithETagBeforeZShift_ReturnsShiftedWidget() throws Exception {
+        // given
+        Widget widget = getWidget();
+        widget.setZ(1);
+        widget = storage.save(widget);
+        String uri = "/widgets/" + widget.getId();
+        String eTag = webTestClient.get().uri(uri).exchange().returnResult(String.class).getResponseHeaders().getETag();
+
+        // when
+        Widget overlappingWidget = getWidget();
+        overlappingWidget.setZ(1);
+        storage.save(overlappingWidget);
+        EntityExchangeResult<byte[]> result = webTestClient
+                .get()
+                .uri(uri)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectBody()
+                .returnResult();
+
+        // then
+        assertEquals(result.getStatus().value(), 200);
+        assertNotEquals(result.getResponseHeaders().getETag(), eTag);
+        assertEquals(objectMapper.readTree(result.getResponseBody()).get("z").asInt(), 2);
+    }
+
+    @Test
+    void getAll_InvalidQuery_ReturnsBadRequest() {
+        // when
+        int status = webTestClient
+                .get()
+                .uri("/widgets?x1=10&y1=10&x2=0&y2=0")
+                .exchange()
+                .returnResult(String.class)
+                .getStatus()
+                .value();
+
+        // then
+        assertEquals(status, 400);
+    }
+
+    @Test
+    void getAll_PageWithNextCursor_StreamsSamePageAsServletVariant() throws Exception {
+        // given
+        for (int i = 0; i < 3; i++) {
+            storage.save(getWidget());
+        }
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setPerPage(2);
+        pageRequest.setWithTotal(true);
+
+        // when
+        byte[] page = webTestClient
+                .get()
+                .uri("/widgets?perPage=2&withTotal=true")
+                .exchange()
+                .expectBody()
+                .returnResult()
+                .getResponseBody();
+
+        // then
+        JsonNode expectedPage = objectMapper.valueToTree(
+                mapper.toResponsePage(widgetService.getAllWidgets(pageRequest, null)));
+        assertEquals(objectMapper.readTree(page), expectedPage);
+        assertTrue(expectedPage.has("next"));
+    }
+
+    @Test
+    void export_Widgets_StreamsSameWidgetsAsPages() throws Exception {
+        // given
+        for (int i = 0; i < 3; i++) {
+            storage.save(getWidget());
+        }
+        byte[] page = webTestClient.get().uri("/widgets").exchange().expectBody().returnResult().getResponseBody();
+
+        // when
+        byte[] export = webTestClient
+                .get()
+                .uri("/widgets/export")
+                .exchange()
+                .expectBody()
+                .returnResult()
+                .getResponseBody();
+
+        // then
+        assertEquals(objectMapper.readTree(export), objectMapper.readTree(page).get("records"));
+    }
+
+    @Test
+    void post_Widget_CreatesWidget() throws Exception {
+        // given
+        WidgetRequest widgetRequest = new WidgetRequest();
+        widgetRequest.setX(10);
+        widgetRequest.setY(10);
+        widgetRequest.setWidth(10.0);
+        widgetRequest.setHeight(10.0);
+
+        // when
+        EntityExchangeResult<byte[]> result = webTestClient
+                .post()
+                .uri("/widgets/")
+                .bodyValue(widgetRequest)
+                .exchange()
+                .expectBody()
+                .returnResult();
+
+        // then
+        assertEquals(result.getStatus().value(), 201);
+        JsonNode widget = objectMapper.readTree(result.getResponseBody());
+        assertEquals(widget.get("z").asInt(), 0);
+        assertTrue(storage.exists(Widget.class, UUID.fromString(widget.get("id").asText())));
+    }
+
+    @Test
+    void post_InvalidWidget_ReturnsBadRequest() {
+        // when
+        int status = webTestClient
+                .post()
+                .uri("/widgets/")
+                .bodyValue(new WidgetRequest())
+                .exchange()
+                .returnResult(String.class)
+                .getStatus()
+                .value();
+
+        // then
+        assertEquals(status, 400);
+        assertEquals(storage.count(Widget.class), 0);
+    }
+
+    @Test
+    void post_ZIndexOutOfBounds_ReturnsBadRequest() {
+        // given
+        WidgetRequest widgetRequest = new WidgetRequest();
+        widgetRequest.setX(10);
+        widgetRequest.setY(10);
+        widgetRequest.setZ(Integer.MAX_VALUE);
+        widgetRequest.setWidth(10.0);
+        widgetRequest.setHeight(10.0);
+
+        // when
+        int status = webTestClient
+                .post()
+                .uri("/widgets/")
+                .bodyValue(widgetRequest)
+                .exchange()
+                .returnResult(String.class)
+                .getStatus()
+                .value();
+
+        // then
+        assertEquals(status, 400);
+        assertEquals(storage.count(Widget.class), 0);
+    }
+
+    @Test
+    void post_WidgetAboveMaxIntZIndex_ReturnsConflict() {
+        // given
+        Widget topWidget = getWidget();
+        topWidget.setZ(Integer.MAX_VALUE);
+        storage.save(topWidget);
+        WidgetRequest widgetRequest = new WidgetRequest();
+        widgetRequest.setX(10);
+        widgetRequest.setY(10);
+        widgetRequest.setWidth(10.0);
+        widgetRequest.setHeight(10.0);
+
+        // when
+        int status = webTestClient
+                .post()
+                .uri("/widgets/")
+                .bodyValue(widgetRequest)
+                .exchange()
+                .returnResult(String.class)
+                .getStatus()
+                .value();
+
+        // then
+        assertEquals(status, 409);
+        assertEquals(storage.count(Widget.class), 1);
+    }
+
+    @Test
+    void delete_MissingWidget_ReturnsNotFound() {
+        // when
+        int status = webTestClient
+                .delete()
+                .uri("/widgets/" + UUID.randomUUID())
+                .exchange()
+                .returnResult(String.class)
+                .getStatus()
+                .value();
+
+        // then
+        assertEquals(status, 404);
+    }
+
+    private Widget getWidget() {
+        Widget widget = new Widget();
+        widget.setX(10);
+        widget.setY(10);
+        widget.setWidth(10);
+        widget.setHeight(10);
+
+        return widget;
+    }
+}
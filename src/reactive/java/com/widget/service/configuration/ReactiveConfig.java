@@ -0,0 +1,38 @@
+package com.widget.service.configuration;
+
+import com.widget.service.controller.WidgetHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+/**
+ * Reactive variant of the API, which is enabled by spring.main.web-application-type=reactive.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveConfig {
+    /**
+     * Runs the reactive variant on Netty, otherwise Tomcat of the servlet variant would be picked from the classpath.
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> widgetRoutes(WidgetHandler handler) {
+        return RouterFunctions
+                .route()
+                .GET("/widgets", handler::getAll)
+                .GET("/widgets/export", handler::export)
+                .GET("/widgets/{id}", handler::getById)
+                .POST("/widgets/", handler::post)
+                .PUT("/widgets/{id}", handler::put)
+                .DELETE("/widgets/{id}", handler::delete)
+                .build();
+    }
+}
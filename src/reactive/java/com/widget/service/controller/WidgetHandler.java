@@ -0,0 +1,424 @@
+package com.widget.service.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.widget.service.cache.WidgetPageCache;
+import com.widget.service.contract.WidgetQuery;
+import com.widget.service.contract.WidgetRequest;
+import com.widget.service.index.ZIndexOverflowException;
+import com.widget.service.mapping.WidgetMapper;
+import com.widget.service.model.Widget;
+import com.widget.service.model.WidgetFilter;
+import com.widget.service.service.WidgetService;
+import com.widget.storage.EntityNotFoundException;
+import com.widget.storage.contract.PageRequest;
+import com.widget.storage.contract.PageResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Handler of /widgets routes of the reactive variant of the API, see {@link WidgetController} for the servlet one.
+ * Widgets are read and written on the bounded elastic scheduler: pages and snapshots may scan widgets under
+ * the storage lock, z-index of a widget is resolved under the read lock of the z-index while it's being shifted,
+ * and writes wait for the storage lock and the journal. Event loop threads only parse requests, check tags
+ * and encode responses.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class WidgetHandler {
+    private WidgetMapper mapper;
+    private WidgetService widgetService;
+    private WidgetPageCache pageCache;
+    private Validator validator;
+    private ObjectMapper objectMapper;
+    private DataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+    // Versions of widgets start over on restart, so tags of the previous run must not match.
+    private final String versionsEpoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+    @Autowired
+    public WidgetHandler(
+            WidgetService widgetService,
+            WidgetPageCache pageCache,
+            WidgetMapper mapper,
+            Validator validator,
+            ObjectMapper objectMapper) {
+        this.widgetService = widgetService;
+        this.pageCache = pageCache;
+        this.mapper = mapper;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Handles GET request to /widgets.
+     * Page is tagged by version of widgets, request with matching If-None-Match is answered
+     * with 304 without reading widgets. Records of the page are encoded one by one as the client reads them,
+     * the same way as export does, in the same JSON shape as the servlet variant.
+     * @return Page of widgets.
+     */
+    public Mono<ServerResponse> getAll(ServerRequest request) {
+        // Version is read before the page, so the tag is never newer than the page.
+        String eTag = "\"" + versionsEpoch + "-" + widgetService.getWidgetsVersion() + "\"";
+        if (matchesETag(request, eTag)) {
+            return ServerResponse.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+
+        PageRequest pageRequest;
+        WidgetFilter widgetFilter;
+        try {
+            pageRequest = toPageRequest(request);
+            widgetFilter = toFilter(request);
+        }
+        catch (IllegalArgumentException ex) {
+            return ServerResponse.badRequest().build();
+        }
+
+        return Mono
+                .fromSupplier(() -> (PageResponse<Widget>) pageCache.get(
+                        pageRequest,
+                        widgetFilter,
+                        () -> widgetService.getAllWidgets(pageRequest, widgetFilter)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(page -> {
+                    Flux<DataBuffer> body = Flux.concat(
+                            Mono.fromSupplier(() -> write("{\"records\":[")),
+                            Flux.fromIterable(page.getRecords()).index().map(x -> write(x.getT1(), x.getT2())),
+                            Mono.fromSupplier(() -> writePageEnd(page)))
+                            .subscribeOn(Schedulers.boundedElastic());
+
+                    return ServerResponse
+                            .ok()
+                            .eTag(eTag)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .body(BodyInserters.fromDataBuffers(body));
+                })
+                .onErrorResume(IllegalArgumentException.class, ex -> ServerResponse.badRequest().build());
+    }
+
+    /**
+     * Handles GET request to /widgets/export.
+     * Widgets are encoded one by one as the client reads them, so neither memory nor the time to the first byte
+     * grows with their count, and a slow client stops reading of widgets instead of buffering them.
+     * Snapshot is taken and widgets are encoded on the bounded elastic scheduler rather than on the event loop.
+     * @return JSON array of all widgets.
+     */
+    public Mono<ServerResponse> export(ServerRequest request) {
+        WidgetFilter widgetFilter;
+        try {
+            widgetFilter = toFilter(request);
+        }
+        catch (IllegalArgumentException ex) {
+            return ServerResponse.badRequest().build();
+        }
+
+        Flux<DataBuffer> body = Flux.concat(
+                Mono.fromSupplier(() -> write("[")),
+                Flux
+                        .defer(() -> Flux.fromIterable(widgetService.exportWidgets(widgetFilter)))
+                        .index()
+                        .map(x -> write(x.getT1(), x.getT2())),
+                Mono.fromSupplier(() -> write("]")))
+                .subscribeOn(Schedulers.boundedElastic());
+
+        return ServerResponse
+                .ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromDataBuffers(body));
+    }
+
+    /**
+     * Handles GET request to /widgets/{id}.
+     * Widget is tagged by its modification time, which follows shifts of its z-index, and by its z-index,
+     * request with matching If-None-Match or If-Modified-Since is answered with 304.
+     * @return Widget by its identifier.
+     */
+    public Mono<ServerResponse> getById(ServerRequest request) {
+        UUID id;
+        try {
+            id = UUID.fromString(request.pathVariable("id"));
+        }
+        catch (IllegalArgumentException ex) {
+            return ServerResponse.badRequest().build();
+        }
+
+        return Mono
+                .fromSupplier(() -> widgetService.getWidgetById(id))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(widget -> {
+                    Instant lastModified = widget.getLastModified().toInstant();
+                    String eTag = "\"" + lastModified.getEpochSecond() + "." + lastModified.getNano()
+                            + "." + widget.getZ() + "\"";
+                    if (isNotModified(request, eTag, lastModified)) {
+                        return ServerResponse
+                                .status(HttpStatus.NOT_MODIFIED)
+                                .eTag(eTag)
+                                .lastModified(lastModified)
+                                .build();
+                    }
+
+                    return ServerResponse
+                            .ok()
+                            .eTag(eTag)
+                            .lastModified(lastModified)
+                            .bodyValue(mapper.toResponse(widget));
+                })
+                .switchIfEmpty(ServerResponse.notFound().build());
+    }
+
+    /**
+     * Handles POST request to /widgets.
+     * @return Created widget.
+     */
+    public Mono<ServerResponse> post(ServerRequest request) {
+        return request
+                .bodyToMono(WidgetRequest.class)
+                .flatMap(widgetRequest -> {
+                    String violations = validate(widgetRequest);
+                    if (violations != null) {
+                        return ServerResponse.badRequest().bodyValue(Collections.singletonMap("message", violations));
+                    }
+
+                    Widget widget = mapper.toWidget(widgetRequest);
+                    return Mono
+                            .fromCallable(() -> widgetService.createWidget(widget))
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .flatMap(x -> ServerResponse.status(HttpStatus.CREATED).bodyValue(mapper.toResponse(x)))
+                            .onErrorResume(ZIndexOverflowException.class, this::conflict);
+                })
+                .switchIfEmpty(ServerResponse.badRequest().build());
+    }
+
+    /**
+     * Handles PUT request to /widgets/{id}.
+     * @return Updated widget.
+     */
+    public Mono<ServerResponse> put(ServerRequest request) {
+        UUID id;
+        try {
+            id = UUID.fromString(request.pathVariable("id"));
+        }
+        catch (IllegalArgumentException ex) {
+            return ServerResponse.badRequest().build();
+        }
+
+        return request
+                .bodyToMono(WidgetRequest.class)
+                .flatMap(widgetRequest -> {
+                    String violations = validate(widgetRequest);
+                    if (violations != null) {
+                        return ServerResponse.badRequest().bodyValue(Collections.singletonMap("message", violations));
+                    }
+
+                    Widget widget = mapper.toWidget(widgetRequest);
+                    widget.setId(id);
+                    return Mono
+                            .fromCallable(() -> widgetService.modifyWidget(widget))
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .flatMap(x -> ServerResponse.ok().bodyValue(mapper.toResponse(x)))
+                            .onErrorResume(EntityNotFoundException.class, ex -> ServerResponse.notFound().build())
+                            .onErrorResume(ZIndexOverflowException.class, this::conflict);
+                })
+                .switchIfEmpty(ServerResponse.badRequest().build());
+    }
+
+    /**
+     * Handles DELETE request to /widgets/{id}.
+     */
+    public Mono<ServerResponse> delete(ServerRequest request) {
+        UUID id;
+        try {
+            id = UUID.fromString(request.pathVariable("id"));
+        }
+        catch (IllegalArgumentException ex) {
+            return ServerResponse.badRequest().build();
+        }
+
+        return Mono
+                .fromCallable(() -> {
+                    widgetService.deleteWidget(id);
+                    return id;
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(x -> ServerResponse.ok().build())
+                .onErrorResume(EntityNotFoundException.class, ex -> ServerResponse.notFound().build());
+    }
+
+    /**
+     * Creates page request from query parameters.
+     * @throws IllegalArgumentException Parameters are malformed or out of bounds.
+     */
+    private PageRequest toPageRequest(ServerRequest request) {
+        PageRequest pageRequest = new PageRequest();
+        request.queryParam("page").map(Integer::valueOf).ifPresent(pageRequest::setPage);
+        request.queryParam("perPage").map(Integer::valueOf).ifPresent(pageRequest::setPerPage);
+        request.queryParam("snapshot").map(Long::valueOf).ifPresent(pageRequest::setSnapshot);
+        request.queryParam("cursor").ifPresent(pageRequest::setCursor);
+        request.queryParam("withTotal").map(Boolean::valueOf).ifPresent(pageRequest::setWithTotal);
+
+        if (!validator.validate(pageRequest).isEmpty()) {
+            throw new IllegalArgumentException("Page request is out of bounds.");
+        }
+
+        return pageRequest;
+    }
+
+    /**
+     * Creates filter from query parameters.
+     * @return Filter or null if the query is empty.
+     * @throws IllegalArgumentException Query is malformed.
+     */
+    private WidgetFilter toFilter(ServerRequest request) {
+        WidgetQuery widgetQuery = new WidgetQuery();
+        widgetQuery.setX1(getDouble(request, "x1"));
+        widgetQuery.setY1(getDouble(request, "y1"));
+        widgetQuery.setX2(getDouble(request, "x2"));
+        widgetQuery.setY2(getDouble(request, "y2"));
+
+        if (widgetQuery.isEmpty()) {
+            return null;
+        }
+        if (!widgetQuery.isValid()) {
+            throw new IllegalArgumentException("Widget query is invalid.");
+        }
+
+        return mapper.toFilter(widgetQuery);
+    }
+
+    private Double getDouble(ServerRequest request, String name) {
+        return request.queryParam(name).map(Double::valueOf).orElse(null);
+    }
+
+    /**
+     * Checks whether If-None-Match header of request contains the tag.
+     * @param eTag Quoted entity tag.
+     */
+    private boolean matchesETag(ServerRequest request, String eTag) {
+        for (String header : request.headers().header(HttpHeaders.IF_NONE_MATCH)) {
+            for (String value : header.split(",")) {
+                value = value.trim();
+                if (value.equals("*") || value.equals(eTag) || value.equals("W/" + eTag)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks conditional headers of request the same way as servlet variant does:
+     * If-Modified-Since is checked only when If-None-Match is absent.
+     * @param eTag Quoted entity tag.
+     * @param lastModified Modification time of entity.
+     */
+    private boolean isNotModified(ServerRequest request, String eTag, Instant lastModified) {
+        if (!request.headers().header(HttpHeaders.IF_NONE_MATCH).isEmpty()) {
+            return matchesETag(request, eTag);
+        }
+
+        long ifModifiedSince = request.headers().asHttpHeaders().getIfModifiedSince();
+        return ifModifiedSince != -1 && lastModified.toEpochMilli() / 1000 * 1000 <= ifModifiedSince;
+    }
+
+    /**
+     * Writes part of JSON into buffer.
+     * @param text Text to write.
+     */
+    private DataBuffer write(String text) {
+        DataBuffer buffer = bufferFactory.allocateBuffer(text.length());
+        buffer.write(text.getBytes(StandardCharsets.UTF_8));
+
+        return buffer;
+    }
+
+    /**
+     * Writes end of JSON object of page into buffer: end of its records and the fields which are present.
+     * @param page Page of widgets.
+     */
+    private DataBuffer writePageEnd(PageResponse<Widget> page) {
+        StringBuilder text = new StringBuilder("]");
+        if (page.getTotal() != null) {
+            text.append(",\"total\":").append(page.getTotal());
+        }
+        if (page.getSnapshot() != null) {
+            text.append(",\"snapshot\":").append(page.getSnapshot());
+        }
+        if (page.getNext() != null) {
+            try {
+                text.append(",\"next\":").append(objectMapper.writeValueAsString(page.getNext()));
+            }
+            catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        return write(text.append("}").toString());
+    }
+
+    /**
+     * Writes element of JSON array of widgets into buffer.
+     * @param index Index of the element.
+     * @param widget Widget.
+     */
+    private DataBuffer write(long index, Widget widget) {
+        DataBuffer buffer = bufferFactory.allocateBuffer(256);
+        if (index > 0) {
+            buffer.write((byte) ',');
+        }
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer.asOutputStream())) {
+            mapper.writeResponse(widget, generator);
+        }
+        catch (IOException ex) {
+            DataBufferUtils.release(buffer);
+            throw new UncheckedIOException(ex);
+        }
+
+        return buffer;
+    }
+
+    /**
+     * Validates request body of single widget.
+     * @param widgetRequest Request body.
+     * @return Violation messages or null if request is valid.
+     */
+    private String validate(WidgetRequest widgetRequest) {
+        Set<ConstraintViolation<WidgetRequest>> violations = validator.validate(widgetRequest);
+        return violations.isEmpty()
+                ? null
+                : violations.stream().map(ConstraintViolation::getMessage).collect(Collectors.joining(" "));
+    }
+
+    /**
+     * Responds that the write conflicts with z-indices of stored widgets.
+     * @param ex Overflow of z-index.
+     */
+    private Mono<ServerResponse> conflict(ZIndexOverflowException ex) {
+        return ServerResponse.status(HttpStatus.CONFLICT).bodyValue(Collections.singletonMap("message", ex.getMessage()));
+    }
+}
@@ -0,0 +1,140 @@
+package com.widget.service.cache;
+
+import com.widget.service.model.Widget;
+import com.widget.service.model.WidgetFilter;
+import com.widget.storage.abstraction.IStorage;
+import com.widget.storage.contract.PageRequest;
+import com.widget.storage.contract.PageResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+class WidgetPageCacheTest {
+    @Autowired
+    private IStorage storage;
+
+    @Autowired
+    private WidgetPageCache pageCache;
+
+    private AtomicInteger loadsCount = new AtomicInteger();
+
+    @BeforeEach
+    public void init() {
+        storage.deleteAll(Widget.class);
+        loadsCount.set(0);
+    }
+
+    @Test
+    void get_RepeatedRequest_LoadsPageOnce() {
+        // given
+        PageRequest pageRequest = new PageRequest(0, 10);
+        pageCache.get(pageRequest, null, this::load);
+
+        // when
+        PageResponse page = pageCache.get(pageRequest, null, this::load);
+
+        // then
+        assertEquals(loadsCount.get(), 1);
+        assertEquals(page.getTotal(), 1);
+    }
+
+    @Test
+    void get_AfterWriteOfWidgetInsideFilter_LoadsPageAgain() {
+        // given
+        WidgetFilter filter = new WidgetFilter(0.0, 0.0, 100.0, 100.0);
+        pageCache.get(new PageRequest(0, 10), filter, this::load);
+
+        // when
+        storage.save(getWidget(50, 50));
+        pageCache.get(new PageRequest(0, 10), filter, this::load);
+
+        // then
+        assertEquals(loadsCount.get(), 2);
+    }
+
+    @Test
+    void get_AfterWriteOfWidgetOutsideFilter_ReturnsCachedPage() {
+        // given
+        WidgetFilter filter = new WidgetFilter(0.0, 0.0, 101.0, 101.0);
+        pageCache.get(new PageRequest(0, 10), filter, this::load);
+
+        // when
+        storage.save(getWidget(500, 500));
+        pageCache.get(new PageRequest(0, 10), filter, this::load);
+
+        // then
+        assertEquals(loadsCount.get(), 1);
+    }
+
+    @Test
+    void get_AfterWidgetMovedOutOfFilter_LoadsPageAgain() {
+        // given
+        WidgetFilter filter = new WidgetFilter(0.0, 0.0, 102.0, 102.0);
+        Widget widget = storage.save(getWidget(50, 50));
+        pageCache.get(new PageRequest(0, 10), filter, this::load);
+
+        // when
+        Widget movedWidget = getWidget(500, 500);
+        movedWidget.setId(widget.getId());
+        storage.save(movedWidget);
+        pageCache.get(new PageRequest(0, 10), filter, this::load);
+
+        // then
+        assertEquals(loadsCount.get(), 2);
+    }
+
+    @Test
+    void get_AfterWriteOfAnyWidget_LoadsPageWithoutFilterAgain() {
+        // given
+        pageCache.get(new PageRequest(1, 10), null, this::load);
+
+        // when
+        storage.save(getWidget(500, 500));
+        pageCache.get(new PageRequest(1, 10), null, this::load);
+
+        // then
+        assertEquals(loadsCount.get(), 2);
+    }
+
+    @Test
+    void get_WriteInsideFilterDuringLoad_LoadsPageAgain() {
+        // given
+        WidgetFilter filter = new WidgetFilter(0.0, 0.0, 103.0, 103.0);
+        pageCache.get(new PageRequest(0, 10), filter, () -> {
+            storage.save(getWidget(50, 50));
+            return load();
+        });
+
+        // when
+        pageCache.get(new PageRequest(0, 10), filter, this::load);
+
+        // then
+        assertEquals(loadsCount.get(), 2);
+    }
+
+    private PageResponse load() {
+        loadsCount.incrementAndGet();
+
+        return new PageResponse(new ArrayList<>(), 1);
+    }
+
+    private Widget getWidget(int x, int y) {
+        Widget widget = new Widget();
+        widget.setX(x);
+        widget.setY(y);
+        widget.setWidth(10);
+        widget.setHeight(10);
+
+        return widget;
+    }
+}
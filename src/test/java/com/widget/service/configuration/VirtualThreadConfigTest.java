@@ -0,0 +1,56 @@
+package com.widget.service.configuration;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class VirtualThreadConfigTest {
+    @Test
+    void newVirtualThreadExecutor_Java21_RunsTasksOnNamedVirtualThreads() throws Exception {
+        // given
+        assumeTrue(isJava21OrLater());
+        ExecutorService executor = VirtualThreadConfig.newVirtualThreadExecutor("test-virtual-");
+
+        // when
+        Thread thread;
+        try {
+            thread = executor.submit(Thread::currentThread).get(10, TimeUnit.SECONDS);
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        // then
+        assertEquals(Thread.class.getMethod("isVirtual").invoke(thread), true);
+        assertEquals(thread.getName(), "test-virtual-0");
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void newVirtualThreadExecutor_BeforeJava21_ThrowsWithRequiredVersion() {
+        // given
+        assumeFalse(isJava21OrLater());
+
+        // when
+        IllegalStateException ex = assertThrows(
+                IllegalStateException.class,
+                () -> VirtualThreadConfig.newVirtualThreadExecutor("test-virtual-"));
+
+        // then
+        assertEquals(
+                ex.getMessage(),
+                "Virtual threads require Java 21 or later, running on Java " + System.getProperty("java.version"));
+        assertTrue(ex.getCause() instanceof ReflectiveOperationException);
+    }
+
+    private static boolean isJava21OrLater() {
+        String version = System.getProperty("java.specification.version");
+
+        return !version.startsWith("1.") && Integer.parseInt(version) >= 21;
+    }
+}
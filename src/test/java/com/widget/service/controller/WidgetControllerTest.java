@@ -0,0 +1,295 @@
+package com.widget.service.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.widget.service.contract.WidgetRequest;
+import com.widget.service.model.Widget;
+import com.widget.storage.abstraction.IStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+class WidgetControllerTest {
+    @Autowired
+    private IStorage storage;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    public void init() {
+        storage.deleteAll(Widget.class);
+    }
+
+    @Test
+    void getAll_RequestWithCurrentETag_ReturnsNotModified() throws Exception {
+        // given
+        storage.save(getWidget());
+        String eTag = mockMvc.perform(get("/widgets")).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // when
+        MockHttpServletResponse response = mockMvc
+                .perform(get("/widgets").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andReturn()
+                .getResponse();
+
+        // then
+        assertEquals(response.getStatus(), 304);
+        assertEquals(response.getContentLength(), 0);
+        assertEquals(response.getHeader(HttpHeaders.ETAG), eTag);
+    }
+
+    @Test
+    void getAll_RequestWithETagBeforeWrite_ReturnsPage() throws Exception {
+        // given
+        String eTag = mockMvc.perform(get("/widgets")).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        storage.save(getWidget());
+
+        // when
+        MockHttpServletResponse response = mockMvc
+                .perform(get("/widgets").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andReturn()
+                .getResponse();
+
+        // then
+        assertEquals(response.getStatus(), 200);
+        assertNotEquals(response.getHeader(HttpHeaders.ETAG), eTag);
+        assertTrue(response.getContentAsString().contains("\"total\":1"));
+    }
+
+    @Test
+    void getById_RequestWithETagBeforeUpdate_ReturnsWidget() throws Exception {
+        // given
+        Widget widget = storage.save(getWidget());
+        String url = "/widgets/" + widget.getId();
+        String eTag = mockMvc.perform(get(url)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        int notModifiedStatus = mockMvc
+                .perform(get(url).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andReturn()
+                .getResponse()
+                .getStatus();
+
+        // when
+        widget.setX(20);
+        storage.save(widget);
+        MockHttpServletResponse response = mockMvc
+                .perform(get(url).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andReturn()
+                .getResponse();
+
+        // then
+        assertEquals(notModifiedStatus, 304);
+        assertEquals(response.getStatus(), 200);
+        assertNotNull(response.getHeader(HttpHeaders.LAST_MODIFIED));
+        assertNotEquals(response.getHeader(HttpHeaders.ETAG), eTag);
+    }
+
+    @Test
+    void getById_RequestWithETagBeforeZShift_ReturnsShiftedWidget() throws Exception {
+        // given
+        Widget widget = getWidget();
+        widget.setZ(1);
+        widget = storage.save(widget);
+        String url = "/widgets/" + widget.getId();
+        String eTag = mockMvc.perform(get(url)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // when
+        Widget overlappingWidget = getWidget();
+        overlappingWidget.setZ(1);
+        storage.save(overlappingWidget);
+        MockHttpServletResponse response = mockMvc
+                .perform(get(url).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andReturn()
+                .getResponse();
+
+        // then
+        assertEquals(response.getStatus(), 200);
+        assertNotEquals(response.getHeader(HttpHeaders.ETAG), eTag);
+        assertEquals(objectMapper.readTree(response.getContentAsString()).get("z").asInt(), 2);
+    }
+
+    @Test
+    void export_Widgets_StreamsSameWidgetsAsPages() throws Exception {
+        // given
+        for (int i = 0; i < 3; i++) {
+            storage.save(getWidget());
+        }
+        String page = mockMvc.perform(get("/widgets")).andReturn().getResponse().getContentAsString();
+
+        // when
+        MvcResult result = mockMvc.perform(get("/widgets/export")).andExpect(request().asyncStarted()).andReturn();
+        String export = mockMvc.perform(asyncDispatch(result)).andReturn().getResponse().getContentAsString();
+
+        // then
+        assertEquals(objectMapper.readTree(export), objectMapper.readTree(page).get("records"));
+    }
+
+    @Test
+    void postAll_WidgetAboveMaxIntZIndex_ReturnsConflictOnlyForIt() throws Exception {
+        // given
+        Widget topWidget = getWidget();
+        topWidget.setZ(Integer.MAX_VALUE);
+        storage.save(topWidget);
+        WidgetRequest widgetRequest1 = getWidgetRequest();
+        widgetRequest1.setZ(1);
+        WidgetRequest widgetRequest2 = getWidgetRequest();
+        WidgetRequest widgetRequest3 = getWidgetRequest();
+        widgetRequest3.setZ(2);
+
+        // when
+        String content = mockMvc
+                .perform(post("/widgets/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                Arrays.asList(widgetRequest1, widgetRequest2, widgetRequest3))))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        // then
+        JsonNode results = objectMapper.readTree(content);
+        assertEquals(results.get(0).get("status").asInt(), 201);
+        assertEquals(results.get(1).get("status").asInt(), 409);
+        assertEquals(results.get(2).get("status").asInt(), 201);
+        assertEquals(results.get(2).get("widget").get("z").asInt(), 2);
+        assertEquals(storage.count(Widget.class), 3);
+    }
+
+    @Test
+    void deleteAll_RepeatedId_ReturnsNotFoundForRepetition() throws Exception {
+        // given
+        Widget widget = storage.save(getWidget());
+
+        // when
+        String content = mockMvc
+                .perform(delete("/widgets/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Arrays.asList(widget.getId(), widget.getId()))))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        // then
+        JsonNode results = objectMapper.readTree(content);
+        assertEquals(results.get(0).get("status").asInt(), 200);
+        assertEquals(results.get(1).get("status").asInt(), 404);
+    }
+
+    @Test
+    void stream_WritesInsideAndOutsideOfViewport_PushesOnlyVisibleChanges() throws Exception {
+        // given
+        MvcResult result = mockMvc
+                .perform(get("/widgets/stream?x1=0&y1=0&x2=100&y2=100"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // when
+        Widget outsideWidget = getWidget();
+        outsideWidget.setX(500);
+        storage.save(outsideWidget);
+        Widget insideWidget = storage.save(getWidget());
+        String content = awaitContent(result, insideWidget.getId().toString());
+
+        // then
+        assertTrue(content.contains("event:changes"));
+        assertFalse(content.contains(outsideWidget.getId().toString()));
+    }
+
+    @Test
+    void stream_WriteShiftingWidgets_PushesSingleChange() throws Exception {
+        // given
+        MvcResult result = mockMvc.perform(get("/widgets/stream")).andReturn();
+        Widget widget1 = getWidget();
+        widget1.setZ(1);
+        storage.save(widget1);
+        Widget widget2 = getWidget();
+        widget2.setZ(2);
+        storage.save(widget2);
+        int offset = awaitContent(result, widget2.getId().toString()).length();
+
+        // when
+        Widget widget3 = getWidget();
+        widget3.setZ(1);
+        storage.save(widget3);
+        String content = awaitContent(result, widget3.getId().toString()).substring(offset);
+
+        // then
+        assertEquals(content.split("event:changes", -1).length - 1, 1);
+        assertTrue(content.contains("\"shifted\":[{\"from\":1,\"count\":2}]"));
+        assertFalse(content.contains(widget1.getId().toString()));
+    }
+
+    @Test
+    void stream_ResumeFromVersion_ReplaysMissedChanges() throws Exception {
+        // given
+        MvcResult liveResult = mockMvc.perform(get("/widgets/stream")).andReturn();
+        long version = storage.getVersion(Widget.class);
+        Widget widget = storage.save(getWidget());
+        awaitContent(liveResult, widget.getId().toString());
+
+        // when
+        MvcResult result = mockMvc
+                .perform(get("/widgets/stream").header("Last-Event-ID", version))
+                .andReturn();
+
+        // then
+        String content = awaitContent(result, widget.getId().toString());
+        assertTrue(content.contains("event:changes"));
+        assertTrue(content.contains(widget.getId().toString()));
+    }
+
+    private String awaitContent(MvcResult result, String expectedContent) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        String content = result.getResponse().getContentAsString();
+        while (!content.contains(expectedContent) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            content = result.getResponse().getContentAsString();
+        }
+
+        return content;
+    }
+
+    private WidgetRequest getWidgetRequest() {
+        WidgetRequest widgetRequest = new WidgetRequest();
+        widgetRequest.setX(10);
+        widgetRequest.setY(10);
+        widgetRequest.setWidth(10.0);
+        widgetRequest.setHeight(10.0);
+
+        return widgetRequest;
+    }
+
+    private Widget getWidget() {
+        Widget widget = new Widget();
+        widget.setX(10);
+        widget.setY(10);
+        widget.setWidth(10);
+        widget.setHeight(10);
+
+        return widget;
+    }
+}
@@ -0,0 +1,69 @@
+package com.widget.service.feed;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WidgetChangeFeedTest {
+    private WidgetChangeFeed feed;
+
+    private CountDownLatch senderReleased = new CountDownLatch(1);
+
+    @BeforeEach
+    public void init() {
+        feed = new WidgetChangeFeed();
+        ReflectionTestUtils.setField(feed, "timeout", 60000L);
+        ReflectionTestUtils.setField(feed, "queueSize", 16);
+        ReflectionTestUtils.setField(feed, "senderThreads", 1);
+        ReflectionTestUtils.setField(feed, "senderQueueSize", 1);
+        feed.init();
+    }
+
+    @AfterEach
+    public void destroy() {
+        senderReleased.countDown();
+        feed.destroy();
+    }
+
+    @Test
+    void subscribe_AllSendersBusy_DisconnectsClient() {
+        // given
+        ExecutorService sender = (ExecutorService) ReflectionTestUtils.getField(feed, "sender");
+        sender.execute(this::awaitRelease);
+        sender.execute(this::awaitRelease);
+
+        // when
+        SseEmitter emitter = feed.subscribe(null, null);
+
+        // then
+        assertThrows(IllegalStateException.class, () -> emitter.send("event"));
+        assertTrue(((List<?>) ReflectionTestUtils.getField(feed, "subscribers")).isEmpty());
+    }
+
+    @Test
+    void subscribe_SenderAvailable_KeepsClient() throws Exception {
+        // when
+        SseEmitter emitter = feed.subscribe(null, null);
+
+        // then
+        emitter.send("event");
+        assertEquals(((List<?>) ReflectionTestUtils.getField(feed, "subscribers")).size(), 1);
+    }
+
+    private void awaitRelease() {
+        try {
+            senderReleased.await();
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
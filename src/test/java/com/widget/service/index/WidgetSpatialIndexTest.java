@@ -0,0 +1,82 @@
+package com.widget.service.index;
+
+import com.widget.service.model.Widget;
+import com.widget.service.model.WidgetFilter;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WidgetSpatialIndexTest {
+    @Test
+    void findInside_AfterAddingUpdatingAndRemoving_ReturnsSameWidgetsAsFullScan() {
+        // given
+        Random random = new Random(42);
+        WidgetSpatialIndex index = new WidgetSpatialIndex();
+        Map<UUID, Widget> widgets = new HashMap<>();
+
+        for (int i = 0; i < 2000; i++) {
+            Widget widget = getWidget(random);
+            widgets.put(widget.getId(), widget);
+            index.add(widget);
+        }
+
+        List<Widget> widgetsToChange = new ArrayList<>(widgets.values()).subList(0, 1000);
+        for (int i = 0; i < widgetsToChange.size(); i++) {
+            Widget widget = widgetsToChange.get(i);
+            if (i % 2 == 0) {
+                widgets.remove(widget.getId());
+                index.remove(widget);
+            }
+            else {
+                widget.setX(random.nextInt(1000));
+                widget.setY(random.nextInt(1000));
+                index.add(widget);
+            }
+        }
+
+        for (int i = 0; i < 100; i++) {
+            double x1 = random.nextInt(1000), y1 = random.nextInt(1000);
+            WidgetFilter filter = new WidgetFilter(x1, y1, x1 + random.nextInt(300), y1 + random.nextInt(300));
+
+            // when
+            Set<UUID> found = index.findInside(filter).stream().map(Widget::getId).collect(Collectors.toSet());
+
+            // then
+            Set<UUID> expected = widgets.values().stream()
+                    .filter(x -> x.getX() - x.getWidth() / 2 >= filter.getX1()
+                            && x.getX() + x.getWidth() / 2 <= filter.getX2()
+                            && x.getY() - x.getHeight() / 2 >= filter.getY1()
+                            && x.getY() + x.getHeight() / 2 <= filter.getY2())
+                    .map(Widget::getId)
+                    .collect(Collectors.toSet());
+            assertEquals(expected, found);
+        }
+    }
+
+    @Test
+    void findInside_AfterClear_ReturnsNothing() {
+        // given
+        WidgetSpatialIndex index = new WidgetSpatialIndex();
+        index.add(getWidget(new Random(1)));
+
+        // when
+        index.clear();
+
+        // then
+        assertTrue(index.findInside(new WidgetFilter(0., 0., 1100., 1100.)).isEmpty());
+    }
+
+    private Widget getWidget(Random random) {
+        Widget widget = new Widget();
+        widget.setId(widget.generateNewId());
+        widget.setX(random.nextInt(1000));
+        widget.setY(random.nextInt(1000));
+        widget.setWidth(1 + random.nextInt(50));
+        widget.setHeight(1 + random.nextInt(50));
+
+        return widget;
+    }
+}
@@ -0,0 +1,216 @@
+package com.widget.service.index;
+
+import com.widget.service.model.Widget;
+import com.widget.service.model.ZShift;
+import com.widget.storage.contract.PageRequest;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WidgetZIndexTest {
+    @Test
+    void add_RandomWritesAndDeletes_ShiftsLikeCascadeOfSaves() {
+        // given
+        Random random = new Random(42);
+        WidgetZIndex index = getIndex();
+        Map<UUID, Integer> expectedZ = new HashMap<>();
+        List<Widget> widgets = new ArrayList<>();
+
+        for (int i = 0; i < 3000; i++) {
+            if (widgets.isEmpty() || random.nextInt(4) != 0) {
+                Widget widget = getWidget(random.nextInt(200));
+                shift(expectedZ, widget.getZ());
+                expectedZ.put(widget.getId(), widget.getZ());
+                widgets.add(widget);
+
+                // when
+                index.add(widget);
+            }
+            else {
+                Widget widget = widgets.remove(random.nextInt(widgets.size()));
+                expectedZ.remove(widget.getId());
+
+                // when
+                index.remove(widget);
+            }
+        }
+
+        // then
+        for (Widget widget : widgets) {
+            assertEquals(widget.getZ(), (int) expectedZ.get(widget.getId()));
+        }
+        List<Integer> expectedOrder = expectedZ
+                .values()
+                .stream()
+                .sorted(Comparator.reverseOrder())
+                .collect(Collectors.toList());
+        assertEquals(
+                index.findAll(new PageRequest(0, widgets.size())).getRecords().stream().map(Widget::getZ)
+                        .collect(Collectors.toList()),
+                expectedOrder);
+        assertEquals(index.copyAll().stream().map(Widget::getZ).collect(Collectors.toList()), expectedOrder);
+        assertEquals(index.findAll(new PageRequest(3, 10)).getRecords(), index.findAfter(
+                index.findAll(new PageRequest(2, 10)).getRecords().get(9), 10));
+        assertEquals(index.getMaxZ(), expectedOrder.get(0));
+    }
+
+    @Test
+    void add_OccupiedZIndex_ReturnsShiftOfContiguousWidgets() {
+        // given
+        WidgetZIndex index = getIndex();
+        index.add(getWidget(1));
+        index.add(getWidget(2));
+        index.add(getWidget(4));
+        Widget widget = getWidget(1);
+
+        // when
+        ZShift shift = (ZShift) index.add(widget);
+
+        // then
+        assertEquals(shift.getFrom(), 1);
+        assertEquals(shift.getCount(), 2);
+        assertEquals(
+                index.copyAll().stream().map(Widget::getZ).collect(Collectors.toList()),
+                Arrays.asList(4, 3, 2, 1));
+    }
+
+    @Test
+    void add_OccupiedZIndex_StampsShiftedWidgetsWithWriteTime() {
+        // given
+        ZonedDateTime created = ZonedDateTime.parse("2020-01-01T00:00:00Z");
+        ZonedDateTime shifted = created.plusSeconds(1);
+        WidgetZIndex index = getIndex();
+        Widget bottom = getWidget(1);
+        Widget top = getWidget(2);
+        Widget untouched = getWidget(4);
+        for (Widget widget : Arrays.asList(bottom, top, untouched)) {
+            widget.setLastModified(created);
+            index.add(widget);
+        }
+        Widget widget = getWidget(1);
+        widget.setLastModified(shifted);
+
+        // when
+        index.add(widget);
+        index.remove(top);
+
+        // then
+        assertEquals(bottom.getLastModified(), shifted);
+        assertEquals(top.getLastModified(), shifted);
+        assertEquals(top.getZ(), 3);
+        assertEquals(untouched.getLastModified(), created);
+        assertEquals(
+                index.copyAll().stream().map(Widget::getLastModified).collect(Collectors.toList()),
+                Arrays.asList(created, shifted, shifted));
+    }
+
+    @Test
+    void canAdd_RunsBelowAndAtMaxIntZIndex_RejectsOnlyShiftOverflowingInt() {
+        // given
+        WidgetZIndex index = getIndex();
+        index.add(getWidget(Integer.MAX_VALUE - 3));
+        index.add(getWidget(Integer.MAX_VALUE - 1));
+        index.add(getWidget(Integer.MAX_VALUE));
+
+        // when
+        boolean canAddBelowGap = index.canAdd(getWidget(Integer.MAX_VALUE - 3));
+        boolean canAddIntoGap = index.canAdd(getWidget(Integer.MAX_VALUE - 2));
+        boolean canAddIntoTopRun = index.canAdd(getWidget(Integer.MAX_VALUE - 1));
+
+        // then
+        assertTrue(canAddBelowGap);
+        assertTrue(canAddIntoGap);
+        assertFalse(canAddIntoTopRun);
+    }
+
+    @Test
+    void remove_ShiftedWidget_KeepsItsLastZIndex() {
+        // given
+        WidgetZIndex index = getIndex();
+        Widget widget = getWidget(1);
+        index.add(widget);
+        index.add(getWidget(1));
+
+        // when
+        index.remove(widget);
+
+        // then
+        assertEquals(widget.getZ(), 2);
+    }
+
+    @Test
+    void add_BottomOfContiguousRun_CostDoesNotGrowWithRunLength() {
+        // given
+        int shortRunLength = 1_000, longRunLength = 100_000, insertsCount = 20_000;
+        WidgetZIndex shortRun = getContiguousIndex(shortRunLength);
+        WidgetZIndex longRun = getContiguousIndex(longRunLength);
+        insertAtBottom(shortRun, insertsCount);
+        insertAtBottom(longRun, insertsCount);
+
+        // when
+        long shortRunTime = insertAtBottom(shortRun, insertsCount);
+        long longRunTime = insertAtBottom(longRun, insertsCount);
+
+        // then
+        // Shifting every widget of the run would make inserts into the long run 100 times slower.
+        assertTrue(longRunTime < shortRunTime * 10, "short run: " + shortRunTime + " ns, long run: " + longRunTime);
+        assertEquals(longRun.size(), longRunLength);
+    }
+
+    /**
+     * Puts widgets on the bottom of contiguous run and removes them, which leaves the run shifted up.
+     * @return Elapsed nanoseconds.
+     */
+    private long insertAtBottom(WidgetZIndex index, int count) {
+        int bottom = index.copyAll().get(index.size() - 1).getZ();
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            Widget widget = getWidget(bottom + i);
+            index.add(widget);
+            index.remove(widget);
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    private WidgetZIndex getContiguousIndex(int count) {
+        WidgetZIndex index = getIndex();
+        for (int i = 0; i < count; i++) {
+            index.add(getWidget(i));
+        }
+
+        return index;
+    }
+
+    private static void shift(Map<UUID, Integer> expectedZ, int z) {
+        Set<Integer> occupied = new HashSet<>(expectedZ.values());
+        int top = z;
+        while (occupied.contains(top)) {
+            top++;
+        }
+
+        int runTop = top;
+        expectedZ.replaceAll((id, x) -> x >= z && x < runTop ? x + 1 : x);
+    }
+
+    private WidgetZIndex getIndex() {
+        WidgetZIndex index = new WidgetZIndex();
+        index.init();
+
+        return index;
+    }
+
+    private Widget getWidget(int z) {
+        Widget widget = new Widget();
+        widget.setId(widget.generateNewId());
+        widget.setZ(z);
+        widget.setWidth(10);
+        widget.setHeight(10);
+
+        return widget;
+    }
+}
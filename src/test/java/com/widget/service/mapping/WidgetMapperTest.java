@@ -0,0 +1,61 @@
+package com.widget.service.mapping;
+
+import com.widget.service.contract.WidgetRequest;
+import com.widget.service.contract.WidgetResponse;
+import com.widget.service.model.Widget;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WidgetMapperTest {
+    private WidgetMapper mapper = new WidgetMapper();
+
+    @Test
+    void toWidget_RequestWithoutZ_LeavesZUnset() {
+        // given
+        WidgetRequest widgetRequest = new WidgetRequest();
+        widgetRequest.setX(10);
+        widgetRequest.setY(20);
+        widgetRequest.setWidth(30.0);
+        widgetRequest.setHeight(40.0);
+
+        // when
+        Widget widget = mapper.toWidget(widgetRequest);
+
+        // then
+        assertFalse(widget.hasZ());
+        assertEquals(widget.getX(), 10);
+        assertEquals(widget.getY(), 20);
+        assertEquals(widget.getArea(), 1200.0);
+    }
+
+    @Test
+    void toResponses_Widget_CopiesAllFields() {
+        // given
+        Widget widget = new Widget();
+        widget.setId(widget.generateNewId());
+        widget.setX(1);
+        widget.setY(2);
+        widget.setZ(3);
+        widget.setWidth(4);
+        widget.setHeight(5);
+        widget.setLastModified(ZonedDateTime.now());
+
+        // when
+        List<WidgetResponse> widgetResponses = mapper.toResponses(Collections.singletonList(widget));
+
+        // then
+        WidgetResponse widgetResponse = widgetResponses.get(0);
+        assertEquals(widgetResponse.getId(), widget.getId());
+        assertEquals(widgetResponse.getX(), 1);
+        assertEquals(widgetResponse.getY(), 2);
+        assertEquals(widgetResponse.getZ(), 3);
+        assertEquals(widgetResponse.getWidth(), 4.0);
+        assertEquals(widgetResponse.getHeight(), 5.0);
+        assertEquals(widgetResponse.getLastModified(), widget.getLastModified());
+    }
+}
@@ -1,5 +1,6 @@
 package com.widget.service.service;
 
+import com.widget.service.index.ZIndexOverflowException;
 import com.widget.service.model.Widget;
 import com.widget.service.model.WidgetFilter;
 import com.widget.storage.EntityNotFoundException;
@@ -55,6 +56,136 @@ class WidgetServiceTest {
                 expected);
     }
 
+    @Test
+    void getAllWidgets_AfterModifyingAndDeleting_ReturnsActualOrder() throws EntityNotFoundException {
+        // given
+        Widget widget1 = getWidget();
+        Widget widget2 = getWidget();
+        Widget widget3 = getWidget();
+        widget1.setZ(1);
+        widget2.setZ(2);
+        widget3.setZ(3);
+        storage.saveAll(new ArrayList<>(List.of(widget1, widget2, widget3)));
+
+        // when
+        widget1.setZ(5);
+        widgetService.modifyWidget(widget1);
+        widgetService.deleteWidget(widget2.getId());
+        PageResponse widgets = widgetService.getAllWidgets(new PageRequest(0, 10), null);
+
+        // then
+        int[] expected = { 5, 3 };
+        assertArrayEquals(
+                widgets.getRecords().stream().mapToInt(x -> ((Widget)x).getZ()).toArray(),
+                expected);
+        assertEquals(widgets.getTotal(), 2);
+    }
+
+
+    @Test
+    void getAllWidgets_WithSnapshot_PagesDontChangeWithConcurrentWrites() {
+        // given
+        Widget widget1 = getWidget();
+        Widget widget2 = getWidget();
+        Widget widget3 = getWidget();
+        widget1.setZ(3);
+        widget2.setZ(2);
+        widget3.setZ(1);
+        storage.saveAll(new ArrayList<>(List.of(widget1, widget2, widget3)));
+
+        PageRequest firstPageRequest = new PageRequest(0, 2);
+        firstPageRequest.setSnapshot(0L);
+        PageResponse firstPage = widgetService.getAllWidgets(firstPageRequest, null);
+
+        Widget widget4 = getWidget();
+        widget4.setZ(1);
+        widgetService.createWidget(widget4);
+
+        // when
+        PageRequest secondPageRequest = new PageRequest(1, 2);
+        secondPageRequest.setSnapshot(firstPage.getSnapshot());
+        PageResponse secondPage = widgetService.getAllWidgets(secondPageRequest, null);
+
+        // then
+        assertEquals(secondPage.getSnapshot(), firstPage.getSnapshot());
+        assertEquals(secondPage.getTotal(), 3);
+        assertEquals(((Widget) secondPage.getRecords().get(0)).getId(), widget3.getId());
+        assertEquals(((Widget) secondPage.getRecords().get(0)).getZ(), 1);
+        assertEquals(storage.findById(Widget.class, widget3.getId()).get().getZ(), 2);
+    }
+
+    @Test
+    void createWidget_BottomOfContiguousRun_WritesOnlyCreatedWidget() {
+        // given
+        int runLength = 10_000;
+        List<Widget> widgets = new ArrayList<>();
+        for (int z = 0; z < runLength; z++) {
+            Widget widget = getWidget();
+            widget.setZ(z);
+            widgets.add(widget);
+        }
+        storage.saveAll(widgets);
+        long version = widgetService.getWidgetsVersion();
+
+        Widget widgetToInsert = getWidget();
+        widgetToInsert.setZ(0);
+
+        // when
+        widgetService.createWidget(widgetToInsert);
+
+        // then
+        assertEquals(widgetService.getWidgetsVersion(), version + 1);
+        assertEquals(widgets.get(0).getZ(), 1);
+        assertEquals(storage.findById(Widget.class, widgets.get(runLength - 1).getId()).get().getZ(), runLength);
+        assertEquals(widgetToInsert.getZ(), 0);
+    }
+
+    @Test
+    void getAllWidgets_WithCursor_ReturnsNextWidgetsWithoutTotal() {
+        // given
+        for (int z = 1; z <= 5; z++) {
+            Widget widget = getWidget();
+            widget.setZ(z);
+            storage.save(widget);
+        }
+
+        PageResponse firstPage = widgetService.getAllWidgets(new PageRequest(0, 2), null);
+
+        Widget widgetToInsert = getWidget();
+        widgetToInsert.setZ(6);
+        widgetService.createWidget(widgetToInsert);
+
+        // when
+        PageRequest secondPageRequest = new PageRequest(0, 2);
+        secondPageRequest.setCursor(firstPage.getNext());
+        PageResponse secondPage = widgetService.getAllWidgets(secondPageRequest, null);
+
+        PageRequest lastPageRequest = new PageRequest(0, 2);
+        lastPageRequest.setCursor(secondPage.getNext());
+        lastPageRequest.setWithTotal(true);
+        PageResponse lastPage = widgetService.getAllWidgets(lastPageRequest, null);
+
+        // then
+        assertArrayEquals(
+                secondPage.getRecords().stream().mapToInt(x -> ((Widget)x).getZ()).toArray(),
+                new int[] { 3, 2 });
+        assertNull(secondPage.getTotal());
+        assertArrayEquals(
+                lastPage.getRecords().stream().mapToInt(x -> ((Widget)x).getZ()).toArray(),
+                new int[] { 1 });
+        assertEquals(lastPage.getTotal(), 6);
+        assertNull(lastPage.getNext());
+    }
+
+    @Test
+    void getAllWidgets_WithMalformedCursor_ThrowsIllegalArgumentException() {
+        // given
+        PageRequest pageRequest = new PageRequest(0, 2);
+        pageRequest.setCursor("not a cursor");
+
+        // then
+        assertThrows(IllegalArgumentException.class, () -> widgetService.getAllWidgets(pageRequest, null));
+    }
 
     @Test
     void getAllWidgets_WithPagingAndFiltering_ReturnsFilteredWidgetsPage() {
@@ -140,6 +271,120 @@ class WidgetServiceTest {
         assertTrue(storage.findById(Widget.class, widget1Id).get().getZ() == 2 && widget2.getZ() == 1);
     }
 
+    @Test
+    void createWidget_ExistentZIndex_ShiftsOnlyContiguousWidgets() {
+        // given
+        Widget widget1 = getWidget();
+        Widget widget2 = getWidget();
+        Widget widget3 = getWidget();
+        widget1.setZ(1);
+        widget2.setZ(2);
+        widget3.setZ(4);
+        storage.saveAll(new ArrayList<>(List.of(widget1, widget2, widget3)));
+
+        Widget widget4 = getWidget();
+        widget4.setZ(1);
+
+        // when
+        widgetService.createWidget(widget4);
+
+        // then
+        assertEquals(storage.findById(Widget.class, widget1.getId()).get().getZ(), 2);
+        assertEquals(storage.findById(Widget.class, widget2.getId()).get().getZ(), 3);
+        assertEquals(storage.findById(Widget.class, widget3.getId()).get().getZ(), 4);
+        assertEquals(widget4.getZ(), 1);
+    }
+
+    @Test
+    void modifyWidget_MoveToExistentZIndex_ShiftsWidgetsAbove() throws EntityNotFoundException {
+        // given
+        Widget widget1 = getWidget();
+        Widget widget2 = getWidget();
+        Widget widget3 = getWidget();
+        widget1.setZ(1);
+        widget2.setZ(2);
+        widget3.setZ(3);
+        storage.saveAll(new ArrayList<>(List.of(widget1, widget2, widget3)));
+
+        // when
+        widget3.setZ(1);
+        widgetService.modifyWidget(widget3);
+        PageResponse widgets = widgetService.getAllWidgets(new PageRequest(0, 10), null);
+
+        // then
+        List<Widget> expected = List.of(widget2, widget1, widget3);
+        assertEquals(widgets.getRecords(), expected);
+        assertArrayEquals(
+                widgets.getRecords().stream().mapToInt(x -> ((Widget)x).getZ()).toArray(),
+                new int[] { 3, 2, 1 });
+    }
+
+    @Test
+    void createWidget_WithoutZIndexAfterDeletingTopWidget_ItGoesRightAboveRemainingWidgets()
+            throws EntityNotFoundException {
+        // given
+        Widget widget1 = getWidget();
+        Widget widget2 = getWidget();
+        widget1.setZ(3);
+        widget2.setZ(7);
+        storage.saveAll(new ArrayList<>(List.of(widget1, widget2)));
+        widgetService.deleteWidget(widget2.getId());
+
+        Widget widget3 = getWidget();
+
+        // when
+        widgetService.createWidget(widget3);
+
+        // then
+        assertEquals(widget3.getZ(), 4);
+    }
+
+    @Test
+    void createWidgets_ExistentZIndices_AllSavedWithUniqueZIndices() {
+        // given
+        Widget existingWidget = getWidget();
+        existingWidget.setZ(1);
+        widgetService.createWidget(existingWidget);
+
+        Widget widget1 = getWidget();
+        Widget widget2 = getWidget();
+        Widget widget3 = getWidget();
+        widget1.setZ(1);
+        widget2.setZ(1);
+
+        // when
+        widgetService.createWidgets(new ArrayList<>(List.of(widget1, widget2, widget3)));
+
+        // then
+        assertEquals(widget2.getZ(), 1);
+        assertEquals(widget1.getZ(), 2);
+        assertEquals(existingWidget.getZ(), 3);
+        assertEquals(widget3.getZ(), 4);
+    }
+
+    @Test
+    void modifyWidgets_WithNonExistentWidget_UpdatesOnlyExistingOnes() {
+        // given
+        Widget existingWidget = getWidget();
+        widgetService.createWidget(existingWidget);
+
+        Widget updatedWidget = getWidget();
+        updatedWidget.setId(existingWidget.getId());
+        updatedWidget.setX(20);
+
+        Widget nonExistentWidget = getWidget();
+        nonExistentWidget.setId(UUID.randomUUID());
+
+        // when
+        List<Widget> savedWidgets = widgetService.modifyWidgets(List.of(updatedWidget, nonExistentWidget));
+
+        // then
+        assertSame(savedWidgets.get(0), updatedWidget);
+        assertNull(savedWidgets.get(1));
+        assertEquals(storage.findById(Widget.class, existingWidget.getId()).get().getX(), 20);
+        assertFalse(storage.exists(Widget.class, nonExistentWidget.getId()));
+    }
+
     @Test
     void modifyWidget_ItUpdates() throws EntityNotFoundException {
         // given
@@ -193,6 +438,123 @@ class WidgetServiceTest {
     }
 
 
+    @Test
+    void deleteWidgets_WithNonExistentId_ReturnsDeletedIds() {
+        // given
+        Widget widget1 = getWidget();
+        Widget widget2 = getWidget();
+        storage.saveAll(new ArrayList<>(List.of(widget1, widget2)));
+        UUID nonExistentId = UUID.randomUUID();
+
+        // when
+        List<UUID> deletedIds = widgetService.deleteWidgets(List.of(widget1.getId(), nonExistentId));
+
+        // then
+        assertEquals(deletedIds, List.of(widget1.getId()));
+        assertFalse(storage.exists(Widget.class, widget1.getId()));
+        assertTrue(storage.exists(Widget.class, widget2.getId()));
+    }
+
+    @Test
+    void exportWidgets_WritesDuringExport_ExportKeepsItsVersion() throws EntityNotFoundException {
+        // given
+        Widget widget1 = getWidget();
+        Widget widget2 = getWidget();
+        widget1.setZ(1);
+        widget2.setZ(2);
+        storage.saveAll(new ArrayList<>(List.of(widget1, widget2)));
+        Iterable<Widget> export = widgetService.exportWidgets(null);
+        Iterable<Widget> filteredExport = widgetService.exportWidgets(new WidgetFilter(0.0, 0.0, 100.0, 100.0));
+
+        // when
+        Widget widget3 = getWidget();
+        widget3.setZ(1);
+        widgetService.createWidget(widget3);
+        widgetService.deleteWidget(widget2.getId());
+
+        // then
+        List<Integer> exportedZ = new ArrayList<>();
+        export.forEach(x -> exportedZ.add(x.getZ()));
+        List<Integer> filteredExportedZ = new ArrayList<>();
+        filteredExport.forEach(x -> filteredExportedZ.add(x.getZ()));
+        assertEquals(exportedZ, List.of(2, 1));
+        assertEquals(filteredExportedZ.size(), 2);
+        assertTrue(filteredExportedZ.containsAll(List.of(1, 2)));
+    }
+
+    @Test
+    void createWidget_LowestIntZIndex_KeepsIt() {
+        // given
+        storage.save(getWidget());
+        Widget widget = getWidget();
+        widget.setZ(Integer.MIN_VALUE);
+
+        // when
+        widgetService.createWidget(widget);
+
+        // then
+        assertEquals(widgetService.getWidgetById(widget.getId()).getZ(), Integer.MIN_VALUE);
+    }
+
+    @Test
+    void createWidget_WithoutZAboveMaxIntZIndex_ThrowsZIndexOverflowException() {
+        // given
+        Widget topWidget = getWidget();
+        topWidget.setZ(Integer.MAX_VALUE);
+        storage.save(topWidget);
+        long version = storage.getVersion(Widget.class);
+        Widget widget = getWidget();
+
+        // when
+        assertThrows(ZIndexOverflowException.class, () -> widgetService.createWidget(widget));
+
+        // then
+        assertFalse(storage.exists(Widget.class, widget.getId()));
+        assertEquals(storage.getVersion(Widget.class), version);
+        assertEquals(widgetService.getWidgetById(topWidget.getId()).getZ(), Integer.MAX_VALUE);
+    }
+
+    @Test
+    void createWidget_ShiftOverMaxIntZIndex_ThrowsAndKeepsWidgets() {
+        // given
+        Widget widget1 = getWidget();
+        Widget widget2 = getWidget();
+        widget1.setZ(Integer.MAX_VALUE - 1);
+        widget2.setZ(Integer.MAX_VALUE);
+        storage.saveAll(new ArrayList<>(List.of(widget1, widget2)));
+        long version = storage.getVersion(Widget.class);
+        Widget widget = getWidget();
+        widget.setZ(Integer.MAX_VALUE - 1);
+
+        // when
+        assertThrows(ZIndexOverflowException.class, () -> widgetService.createWidget(widget));
+
+        // then
+        assertEquals(storage.getVersion(Widget.class), version);
+        assertEquals(widgetService.getWidgetById(widget1.getId()).getZ(), Integer.MAX_VALUE - 1);
+        assertEquals(widgetService.getWidgetById(widget2.getId()).getZ(), Integer.MAX_VALUE);
+    }
+
+    @Test
+    void modifyWidget_MoveWithinRunAtMaxIntZIndex_ShiftsWidgetsBelowIt() throws EntityNotFoundException {
+        // given
+        Widget widget1 = getWidget();
+        Widget widget2 = getWidget();
+        widget1.setZ(Integer.MAX_VALUE - 1);
+        widget2.setZ(Integer.MAX_VALUE);
+        storage.saveAll(new ArrayList<>(List.of(widget1, widget2)));
+        Widget updatedWidget = getWidget();
+        updatedWidget.setId(widget2.getId());
+        updatedWidget.setZ(Integer.MAX_VALUE - 1);
+
+        // when
+        widgetService.modifyWidget(updatedWidget);
+
+        // then
+        assertEquals(widgetService.getWidgetById(widget2.getId()).getZ(), Integer.MAX_VALUE - 1);
+        assertEquals(widgetService.getWidgetById(widget1.getId()).getZ(), Integer.MAX_VALUE);
+    }
+
     private Widget getWidget() {
         Widget widget = new Widget();
         widget.setX(10);
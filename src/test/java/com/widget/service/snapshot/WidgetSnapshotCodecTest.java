@@ -0,0 +1,127 @@
+package com.widget.service.snapshot;
+
+import com.widget.service.model.Widget;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WidgetSnapshotCodecTest {
+    private WidgetSnapshotCodec codec = new WidgetSnapshotCodec();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void read_WrittenSnapshot_ReturnsEqualWidgets() throws Exception {
+        // given
+        Widget widget1 = getWidget(1, 2, 3);
+        widget1.setLastModified(ZonedDateTime.now());
+        Widget widget2 = getWidget(4, 5, null);
+        Path path = directory.resolve("widgets.bin");
+        codec.write(path, Arrays.asList(widget1, widget2));
+
+        // when
+        List<Widget> widgets = new ArrayList<>();
+        codec.read(path, widgets::add);
+
+        // then
+        assertEquals(2, widgets.size());
+        assertEquals(widget1.getId(), widgets.get(0).getId());
+        assertEquals(widget1.getX(), widgets.get(0).getX());
+        assertEquals(widget1.getY(), widgets.get(0).getY());
+        assertEquals(widget1.getZ(), widgets.get(0).getZ());
+        assertEquals(widget1.getWidth(), widgets.get(0).getWidth());
+        assertEquals(widget1.getHeight(), widgets.get(0).getHeight());
+        assertTrue(widget1.getLastModified().isEqual(widgets.get(0).getLastModified()));
+        assertEquals(widget2.getId(), widgets.get(1).getId());
+        assertFalse(widgets.get(1).hasZ());
+        assertNull(widgets.get(1).getLastModified());
+    }
+
+    @Test
+    void read_WrittenSnapshot_KeepsZonesOfModificationTimes() throws Exception {
+        // given
+        Widget widget1 = getWidget(1, 2, 3);
+        widget1.setLastModified(ZonedDateTime.now(ZoneId.of("Europe/Berlin")));
+        Widget widget2 = getWidget(4, 5, 6);
+        widget2.setLastModified(ZonedDateTime.now(ZoneOffset.ofHours(-5)));
+        Widget widget3 = getWidget(7, 8, 9);
+        widget3.setLastModified(ZonedDateTime.now(ZoneId.of("Europe/Berlin")).plusSeconds(1));
+        Path path = directory.resolve("widgets.bin");
+        codec.write(path, Arrays.asList(widget1, widget2, widget3));
+
+        // when
+        List<Widget> widgets = new ArrayList<>();
+        codec.read(path, widgets::add);
+
+        // then
+        assertEquals(widget1.getLastModified(), widgets.get(0).getLastModified());
+        assertEquals(widget2.getLastModified(), widgets.get(1).getLastModified());
+        assertEquals(widget3.getLastModified(), widgets.get(2).getLastModified());
+    }
+
+    @Test
+    void read_SnapshotWithoutZones_ReturnsModificationTimesInUtc() throws Exception {
+        // given
+        Widget widget = getWidget(1, 2, 3);
+        ZonedDateTime lastModified = ZonedDateTime.now(ZoneId.of("Europe/Berlin"));
+        ByteBuffer buffer = ByteBuffer.allocate(12 + 56);
+        buffer.putInt(0x57434F4C).putInt(1).putInt(1);
+        buffer.putLong(widget.getId().getMostSignificantBits()).putLong(widget.getId().getLeastSignificantBits());
+        buffer.putInt(widget.getX()).putInt(widget.getY()).putInt(widget.getZ());
+        buffer.putDouble(widget.getWidth()).putDouble(widget.getHeight());
+        buffer.putLong(lastModified.toEpochSecond()).putInt(lastModified.getNano());
+        Path path = directory.resolve("widgets.bin");
+        Files.write(path, buffer.array());
+
+        // when
+        List<Widget> widgets = new ArrayList<>();
+        codec.read(path, widgets::add);
+
+        // then
+        assertEquals(1, widgets.size());
+        assertEquals(widget.getId(), widgets.get(0).getId());
+        assertEquals(widget.getZ(), widgets.get(0).getZ());
+        assertEquals(widget.getHeight(), widgets.get(0).getHeight());
+        assertEquals(lastModified.withZoneSameInstant(ZoneOffset.UTC), widgets.get(0).getLastModified());
+    }
+
+    @Test
+    void read_EmptySnapshot_ReturnsNoWidgets() throws Exception {
+        // given
+        Path path = directory.resolve("widgets.bin");
+        codec.write(path, new ArrayList<>());
+
+        // when
+        List<Widget> widgets = new ArrayList<>();
+        codec.read(path, widgets::add);
+
+        // then
+        assertTrue(widgets.isEmpty());
+    }
+
+    private Widget getWidget(int x, int y, Integer z) {
+        Widget widget = new Widget();
+        widget.setId(widget.generateNewId());
+        widget.setX(x);
+        widget.setY(y);
+        if (z != null) {
+            widget.setZ(z);
+        }
+        widget.setWidth(10.5);
+        widget.setHeight(20.25);
+
+        return widget;
+    }
+}
@@ -1,21 +1,34 @@
 package com.widget.storage;
 
 import com.widget.service.WidgetServiceApp;
+import com.widget.service.index.WidgetZIndex;
 import com.widget.service.model.Widget;
+import com.widget.storage.abstraction.IEventBus;
 import com.widget.storage.abstraction.IStorage;
+import com.widget.storage.contract.EntityEvent;
 import com.widget.storage.contract.PageRequest;
 import com.widget.storage.contract.PageResponse;
+import com.widget.storage.contract.Snapshot;
+import com.widget.storage.journal.FileJournal;
 import org.junit.After;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.lang.reflect.Array;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -119,6 +132,23 @@ class InMemoryStorageTest {
         assertEquals(storage.findById(Widget.class, id).get().getZ(), zIndexAfterUpdate);
     }
 
+    @Test
+    void save_ExistingEntity_ItReplacesStoredInstance() {
+        // given
+        Widget widgetToSave = getWidget();
+        storage.save(widgetToSave);
+        UUID id = widgetToSave.getId();
+
+        // when
+        Widget widgetToUpdate = getWidget();
+        widgetToUpdate.setId(id);
+        storage.save(widgetToUpdate);
+
+        // then
+        assertSame(storage.findById(Widget.class, id).get(), widgetToUpdate);
+        assertEquals(storage.findAll(Widget.class, null).size(), 1);
+    }
+
     @Test
     void saveAll_CollectionOfEntities_SuccessfullySaved() {
         // given
@@ -134,6 +164,66 @@ class InMemoryStorageTest {
         assertEquals(storage.findAll(Widget.class, null).size(), 2);
     }
 
+    @Test
+    void update_DeletedEntity_ThrowsAndDoesNotCreateIt() throws EntityNotFoundException {
+        // given
+        Widget widget = getWidget();
+        storage.save(widget);
+        storage.deleteById(Widget.class, widget.getId());
+
+        // when
+        assertThrows(EntityNotFoundException.class, () -> storage.update(widget));
+
+        // then
+        assertFalse(storage.exists(Widget.class, widget.getId()));
+    }
+
+    @Test
+    void updateAll_WithDeletedEntity_UpdatesOnlyExistingOnes() throws EntityNotFoundException {
+        // given
+        Widget widget1 = getWidget();
+        Widget widget2 = getWidget();
+        storage.saveAll(new ArrayList<>(List.of(widget1, widget2)));
+        storage.deleteById(Widget.class, widget2.getId());
+        widget1.setX(20);
+
+        // when
+        List<Widget> updatedWidgets = storage.updateAll(List.of(widget1, widget2));
+
+        // then
+        assertEquals(updatedWidgets, Arrays.asList(widget1, null));
+        assertEquals(storage.findById(Widget.class, widget1.getId()).get().getX(), 20);
+        assertFalse(storage.exists(Widget.class, widget2.getId()));
+    }
+
+    @Test
+    void updateAll_WithRejectedEntity_UpdatesRestOfBatch() {
+        // given
+        Widget topWidget = getWidget();
+        topWidget.setZ(Integer.MAX_VALUE);
+        Widget widget1 = getWidget();
+        widget1.setZ(1);
+        Widget widget2 = getWidget();
+        widget2.setZ(2);
+        storage.saveAll(new ArrayList<>(List.of(topWidget, widget1, widget2)));
+        Widget updatedWidget1 = widget1.copy();
+        updatedWidget1.setZ(Integer.MAX_VALUE);
+        Widget updatedWidget2 = widget2.copy();
+        updatedWidget2.setX(20);
+        List<Integer> rejectedPositions = new ArrayList<>();
+
+        // when
+        List<Widget> updatedWidgets = storage.updateAll(
+                List.of(updatedWidget1, updatedWidget2),
+                (ex, position) -> rejectedPositions.add(position));
+
+        // then
+        assertEquals(rejectedPositions, List.of(0));
+        assertEquals(updatedWidgets, Arrays.asList(null, updatedWidget2));
+        assertEquals(storage.findById(Widget.class, widget1.getId()).get().getZ(), 1);
+        assertEquals(storage.findById(Widget.class, widget2.getId()).get().getX(), 20);
+    }
+
     @Test
     void findById_ExistingEntityId_ReturnsEntity() {
         // given
@@ -221,6 +311,29 @@ class InMemoryStorageTest {
         assertArrayEquals(widgets.stream().mapToInt(Widget::getZ).toArray(), expected);
     }
 
+    @Test
+    void findAll_WithSortingAndFilteringAboveParallelThreshold_ReturnsFilteredAndSortedRecords() {
+        // given
+        int count = 30000;
+        List<Widget> widgetsToSave = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Widget widget = getWidget();
+            widget.setZ((i * 7919) % count);
+            widgetsToSave.add(widget);
+        }
+        storage.saveAll(widgetsToSave);
+
+        // when
+        List<Widget> widgets = storage.findAll(
+                Widget.class,
+                x -> x.getZ() % 3 == 0,
+                Comparator.comparingInt(Widget::getZ));
+
+        // then
+        int[] expected = IntStream.range(0, count).filter(x -> x % 3 == 0).toArray();
+        assertArrayEquals(widgets.stream().mapToInt(Widget::getZ).toArray(), expected);
+    }
+
     @Test
     void findAll_WithPagingAndSorting_ReturnsPageOfSortedRecords() {
         // given
@@ -283,6 +396,204 @@ class InMemoryStorageTest {
         assertArrayEquals(widgets.getRecords().stream().mapToInt(Widget::getZ).toArray(), expected);
     }
 
+    @Test
+    void findAll_WithPagingAndSortingAndFilteringAboveParallelThreshold_ReturnsPageAndTotal() {
+        // given
+        int count = 30000;
+        List<Widget> widgetsToSave = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Widget widget = getWidget();
+            widget.setZ((i * 7919) % count);
+            widgetsToSave.add(widget);
+        }
+        storage.saveAll(widgetsToSave);
+
+        // when
+        PageResponse<Widget> widgets = storage.findAll(
+                Widget.class,
+                x -> x.getZ() % 3 == 0,
+                new PageRequest(3, 5),
+                Comparator.comparingInt(Widget::getZ).reversed());
+
+        // then
+        int[] expected = { 29952, 29949, 29946, 29943, 29940 };
+        assertArrayEquals(widgets.getRecords().stream().mapToInt(Widget::getZ).toArray(), expected);
+        assertEquals(widgets.getTotal(), 10000);
+    }
+
+    @Test
+    void findAfter_WithoutSortedIndex_ReturnsFollowingRecords() {
+        // given
+        Widget widget1 = getWidget();
+        Widget widget2 = getWidget();
+        Widget widget3 = getWidget();
+        widget1.setX(1);
+        widget2.setX(2);
+        widget3.setX(3);
+        storage.saveAll(new ArrayList<>(List.of(widget1, widget2, widget3)));
+
+        // when
+        List<Widget> widgets = storage.findAfter(Widget.class, widget1, 1, Comparator.comparing(Widget::getX));
+
+        // then
+        assertEquals(widgets, List.of(widget2));
+    }
+
+    @Test
+    void snapshot_WithoutWrites_ReturnsTheSameSnapshot() {
+        // given
+        storage.save(getWidget());
+        Comparator<Widget> sort = Comparator.comparing(Widget::getX);
+
+        // when
+        Snapshot<Widget> snapshot1 = storage.snapshot(Widget.class, "x", sort, null);
+        Snapshot<Widget> snapshot2 = storage.snapshot(Widget.class, "x", sort, null);
+
+        // then
+        assertSame(snapshot1, snapshot2);
+    }
+
+    @Test
+    void snapshot_PinnedVersionAfterWrites_ReturnsOldState() throws EntityNotFoundException {
+        // given
+        Widget widget = getWidget();
+        storage.save(widget);
+        Comparator<Widget> sort = Comparator.comparing(Widget::getX);
+        Snapshot<Widget> snapshot = storage.snapshot(Widget.class, "x", sort, null);
+
+        widget.setX(20);
+        storage.save(widget);
+        storage.save(getWidget());
+
+        // when
+        Snapshot<Widget> pinnedSnapshot = storage.snapshot(Widget.class, "x", sort, snapshot.getVersion());
+        Snapshot<Widget> latestSnapshot = storage.snapshot(Widget.class, "x", sort, null);
+
+        // then
+        assertSame(pinnedSnapshot, snapshot);
+        assertEquals(pinnedSnapshot.getRecords().size(), 1);
+        assertEquals(pinnedSnapshot.getRecords().get(0).getX(), 10);
+        assertTrue(latestSnapshot.getVersion() > snapshot.getVersion());
+        assertEquals(latestSnapshot.getRecords().size(), 2);
+    }
+
+    @Test
+    void snapshot_NewComparatorInstanceOfTheSameSort_ReturnsTheSameSnapshot() {
+        // given
+        storage.save(getWidget());
+        Snapshot<Widget> snapshot = storage.snapshot(Widget.class, "x", Comparator.comparing(Widget::getX), null);
+
+        // when
+        Snapshot<Widget> sameSnapshot = storage.snapshot(Widget.class, "x", Comparator.comparing(Widget::getX), null);
+
+        // then
+        assertSame(sameSnapshot, snapshot);
+    }
+
+    @Test
+    void snapshot_RetainedRecordsOverLimit_EvictsOldestSnapshots() {
+        // given
+        InMemoryStorage storage = new InMemoryStorage();
+        ReflectionTestUtils.setField(storage, "maxSnapshotRecords", 3L);
+        storage.init();
+        Comparator<Widget> sort = Comparator.comparing(Widget::getX);
+        storage.save(getWidget());
+        Snapshot<Widget> snapshot1 = storage.snapshot(Widget.class, "x", sort, null);
+        storage.save(getWidget());
+        Snapshot<Widget> snapshot2 = storage.snapshot(Widget.class, "x", sort, null);
+        storage.save(getWidget());
+
+        // when
+        Snapshot<Widget> snapshot3 = storage.snapshot(Widget.class, "x", sort, null);
+
+        // then
+        assertEquals(snapshot3.getRecords().size(), 3);
+        assertNotSame(storage.snapshot(Widget.class, "x", sort, snapshot1.getVersion()), snapshot1);
+        assertNotSame(storage.snapshot(Widget.class, "x", sort, snapshot2.getVersion()), snapshot2);
+        assertSame(storage.snapshot(Widget.class, "x", sort, snapshot3.getVersion()), snapshot3);
+        storage.destroy();
+    }
+
+    @Test
+    void save_WhilePublisherIsBlocked_CompletesAndPublishesInWriteOrder() throws Exception {
+        // given
+        CountDownLatch publisherBlocked = new CountDownLatch(1);
+        CountDownLatch publisherReleased = new CountDownLatch(1);
+        List<EntityEvent> publishedEvents = new CopyOnWriteArrayList<>();
+        InMemoryStorage storage = new InMemoryStorage();
+        ReflectionTestUtils.setField(storage, "eventBus", new IEventBus() {
+            @Override
+            public boolean hasListeners() {
+                return true;
+            }
+
+            @Override
+            public void publish(List<EntityEvent> events) {
+                publisherBlocked.countDown();
+                try {
+                    publisherReleased.await();
+                }
+                catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                publishedEvents.addAll(events);
+            }
+        });
+        storage.init();
+        Widget widget1 = getWidget();
+        Widget widget2 = getWidget();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> blockedSave = executor.submit(() -> storage.save(widget1));
+        publisherBlocked.await();
+
+        // when
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> storage.save(widget2));
+        publisherReleased.countDown();
+        blockedSave.get(5, TimeUnit.SECONDS);
+
+        // then
+        assertEquals(publishedEvents.size(), 2);
+        assertEquals(publishedEvents.get(0).getEntity().getId(), widget1.getId());
+        assertEquals(publishedEvents.get(1).getEntity().getId(), widget2.getId());
+        executor.shutdown();
+        storage.destroy();
+    }
+
+    @Test
+    void compact_DuringShiftingInserts_RestoresSameZIndices(@TempDir Path directory) throws Exception {
+        // given
+        InMemoryStorage storage = createJournaledStorage(directory);
+        FileJournal journal = (FileJournal) ReflectionTestUtils.getField(storage, "journal");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> inserts = executor.submit(() -> {
+            for (int i = 0; i < 20_000; i++) {
+                Widget widget = getWidget();
+                widget.setZ(0);
+                storage.save(widget);
+            }
+        });
+
+        // when
+        int compactionsCount = 0;
+        while (!inserts.isDone()) {
+            journal.compact();
+            compactionsCount++;
+        }
+        inserts.get();
+        journal.close();
+        Map<UUID, Integer> zIndices = getZIndices(storage);
+        InMemoryStorage restoredStorage = createJournaledStorage(directory);
+
+        // then
+        assertTrue(compactionsCount > 1);
+        assertEquals(new HashSet<>(zIndices.values()).size(), zIndices.size());
+        assertEquals(getZIndices(restoredStorage), zIndices);
+        ((FileJournal) ReflectionTestUtils.getField(restoredStorage, "journal")).close();
+        executor.shutdown();
+        storage.destroy();
+        restoredStorage.destroy();
+    }
+
     @Test
     void deleteById_ExistingEntityId_SuccessfullyDeleted() throws EntityNotFoundException {
         // given
@@ -364,6 +675,81 @@ class InMemoryStorageTest {
         assertFalse(storage.exists(Widget.class, UUID.randomUUID()));
     }
 
+    @Test
+    void save_ConcurrentWritersAndReaders_NoUpdatesLost() throws Exception {
+        // given
+        int writersCount = 8, widgetsPerWriter = 250;
+        ExecutorService executor = Executors.newFixedThreadPool(writersCount + 2);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> writers = new ArrayList<>();
+        List<Future<?>> readers = new ArrayList<>();
+        AtomicBoolean isWriting = new AtomicBoolean(true);
+
+        for (int i = 0; i < writersCount; i++) {
+            int writerIndex = i;
+            writers.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < widgetsPerWriter; j++) {
+                    Widget widget = getWidget();
+                    if ((writerIndex + j) % 4 == 0) {
+                        widget.setZ(0);
+                    }
+                    storage.save(widget);
+                }
+                return null;
+            }));
+        }
+        for (int i = 0; i < 2; i++) {
+            readers.add(executor.submit(() -> {
+                start.await();
+                while (isWriting.get()) {
+                    List<Widget> widgets = storage.findAll(Widget.class, Comparator.comparing(Widget::getZ));
+                    widgets.forEach(x -> storage.findById(Widget.class, x.getId()));
+                }
+                return null;
+            }));
+        }
+
+        // when
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get(1, TimeUnit.MINUTES);
+        }
+        isWriting.set(false);
+        for (Future<?> reader : readers) {
+            reader.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        // then
+        List<Widget> widgets = storage.findAll(Widget.class, Comparator.comparing(Widget::getZ));
+        int[] expected = new int[writersCount * widgetsPerWriter];
+        Arrays.setAll(expected, x -> x);
+        assertArrayEquals(widgets.stream().mapToInt(Widget::getZ).toArray(), expected);
+    }
+
+    private InMemoryStorage createJournaledStorage(Path directory) {
+        WidgetZIndex zIndex = new WidgetZIndex();
+        zIndex.init();
+        InMemoryStorage storage = new InMemoryStorage();
+        ReflectionTestUtils.setField(storage, "journal", new FileJournal(
+                Jackson2ObjectMapperBuilder.json().build(), directory.toString(), 10, Long.MAX_VALUE, false));
+        ReflectionTestUtils.setField(storage, "indexes", Collections.singletonList(zIndex));
+        storage.init();
+
+        return storage;
+    }
+
+    private Map<UUID, Integer> getZIndices(InMemoryStorage storage) {
+        Map<UUID, Integer> zIndices = new HashMap<>();
+        storage.findAll(Widget.class, WidgetZIndex.Z_ORDER).forEach(x -> {
+            Widget widget = (Widget) x;
+            zIndices.put(widget.getId(), widget.getZ());
+        });
+
+        return zIndices;
+    }
+
     private Widget getWidget() {
         Widget widget = new Widget();
         widget.setX(10);
@@ -373,4 +759,4 @@ class InMemoryStorageTest {
 
         return widget;
     }
-}
\ No newline at end of file
+}
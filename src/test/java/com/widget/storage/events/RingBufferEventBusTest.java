@@ -0,0 +1,127 @@
+package com.widget.storage.events;
+
+import com.widget.service.model.Widget;
+import com.widget.storage.abstraction.IEventListener;
+import com.widget.storage.contract.EntityEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RingBufferEventBusTest {
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void publish_MoreEventsThanBufferSize_DeliversAllInOrderInBatches() throws Exception {
+        // given
+        List<Long> versions = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger batchesCount = new AtomicInteger();
+        RingBufferEventBus eventBus = createEventBus(64, RingBufferEventBus.Backpressure.BLOCK, events -> {
+            batchesCount.incrementAndGet();
+            events.forEach(x -> versions.add(x.getVersion()));
+        });
+
+        // when
+        for (long i = 0; i < 10000; i++) {
+            eventBus.publish(Collections.singletonList(EntityEvent.deleteAll(Widget.class, i)));
+        }
+        eventBus.stop();
+
+        // then
+        assertEquals(versions.size(), 10000);
+        for (int i = 0; i < versions.size(); i++) {
+            assertEquals((long) versions.get(i), i);
+        }
+        assertTrue(batchesCount.get() < 10000);
+    }
+
+    @Test
+    void publish_EventsOfWrites_DeliversWholeWritesInBatches() throws Exception {
+        // given
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        RingBufferEventBus eventBus = createEventBus(64, RingBufferEventBus.Backpressure.BLOCK, events -> {
+            batchSizes.add(events.size());
+        });
+
+        // when
+        for (long i = 0; i < 1000; i++) {
+            eventBus.publish(Arrays.asList(
+                    EntityEvent.deleteAll(Widget.class, 3 * i),
+                    EntityEvent.deleteAll(Widget.class, 3 * i + 1),
+                    EntityEvent.deleteAll(Widget.class, 3 * i + 2)));
+        }
+        eventBus.stop();
+
+        // then
+        assertEquals(batchSizes.stream().mapToInt(x -> x).sum(), 3000);
+        assertTrue(batchSizes.stream().allMatch(x -> x % 3 == 0));
+    }
+
+    @Test
+    void publish_FullBufferWithDropBackpressure_DropsEvents() throws Exception {
+        // given
+        CountDownLatch released = new CountDownLatch(1);
+        AtomicInteger deliveredCount = new AtomicInteger();
+        RingBufferEventBus eventBus = createEventBus(4, RingBufferEventBus.Backpressure.DROP, events -> {
+            try {
+                released.await(10, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            deliveredCount.addAndGet(events.size());
+        });
+
+        // when
+        for (long i = 0; i < 20; i++) {
+            eventBus.publish(Collections.singletonList(EntityEvent.deleteAll(Widget.class, i)));
+        }
+        released.countDown();
+        eventBus.stop();
+
+        // then
+        double droppedCount = meterRegistry.counter("storage.events.dropped").count();
+        assertTrue(droppedCount > 0);
+        assertEquals(deliveredCount.get() + (int) droppedCount, 20);
+    }
+
+    @Test
+    void publish_EventsReadByAllListeners_ClearsSlots() throws Exception {
+        // given
+        AtomicInteger deliveredCount = new AtomicInteger();
+        IEventListener listener = events -> deliveredCount.addAndGet(events.size());
+        RingBufferEventBus eventBus = createEventBus(64, RingBufferEventBus.Backpressure.BLOCK, listener, listener);
+
+        // when
+        for (long i = 0; i < 100; i++) {
+            eventBus.publish(Collections.singletonList(EntityEvent.deleteAll(Widget.class, i)));
+        }
+        eventBus.stop();
+
+        // then
+        assertEquals(deliveredCount.get(), 200);
+        Object[] entries = (Object[]) ReflectionTestUtils.getField(eventBus, "entries");
+        assertTrue(Arrays.stream(entries).allMatch(Objects::isNull));
+    }
+
+    private RingBufferEventBus createEventBus(
+            int bufferSize,
+            RingBufferEventBus.Backpressure backpressure,
+            IEventListener... listeners) {
+        RingBufferEventBus eventBus = new RingBufferEventBus(bufferSize, 16, backpressure, meterRegistry);
+        eventBus.setListeners(Arrays.asList(listeners));
+        eventBus.start();
+
+        return eventBus;
+    }
+}
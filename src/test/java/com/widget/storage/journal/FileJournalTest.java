@@ -0,0 +1,220 @@
+package com.widget.storage.journal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.widget.service.model.Widget;
+import com.widget.service.snapshot.WidgetSnapshotCodec;
+import com.widget.storage.abstraction.BaseEntity;
+import com.widget.storage.contract.JournalRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileJournalTest {
+    private ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void open_AfterSavesAndDeletes_RestoresLatestState() throws Exception {
+        // given
+        Map<UUID, BaseEntity> state = new HashMap<>();
+        FileJournal journal = createJournal();
+        journal.open(x -> apply(state, x), () -> new ArrayList<>(state.values()));
+
+        Widget widget1 = getWidget(1);
+        Widget widget2 = getWidget(2);
+        journal.append(JournalRecord.save(widget1));
+        journal.append(JournalRecord.save(widget2));
+        widget2.setZ(3);
+        journal.append(JournalRecord.save(widget2));
+        journal.append(JournalRecord.delete(Widget.class, widget1.getId()));
+        journal.close();
+
+        // when
+        Map<UUID, BaseEntity> restoredState = reopen();
+
+        // then
+        assertEquals(1, restoredState.size());
+        Widget restoredWidget = (Widget) restoredState.get(widget2.getId());
+        assertEquals(3, restoredWidget.getZ());
+        assertEquals(widget2.getX(), restoredWidget.getX());
+        assertEquals(widget2.getWidth(), restoredWidget.getWidth());
+        assertTrue(widget2.getLastModified().isEqual(restoredWidget.getLastModified()));
+    }
+
+    @Test
+    void open_AfterCompaction_RestoresSnapshotAndNewerRecords() throws Exception {
+        // given
+        Map<UUID, BaseEntity> state = new HashMap<>();
+        FileJournal journal = createJournal();
+        journal.open(x -> apply(state, x), () -> new ArrayList<>(state.values()));
+
+        List<Widget> widgets = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Widget widget = getWidget(i);
+            widgets.add(widget);
+            journal.append(JournalRecord.save(widget));
+            state.put(widget.getId(), widget);
+        }
+        journal.compact();
+        journal.append(JournalRecord.delete(Widget.class, widgets.get(0).getId()));
+        journal.close();
+        long filesCount = countFiles();
+
+        // when
+        Map<UUID, BaseEntity> restoredState = reopen();
+
+        // then
+        assertEquals(3, filesCount);
+        assertEquals(9, restoredState.size());
+        assertFalse(restoredState.containsKey(widgets.get(0).getId()));
+    }
+
+    @Test
+    void open_AfterCompactionWithCodec_RestoresEntitiesFromCodecSnapshot() throws Exception {
+        // given
+        Map<UUID, BaseEntity> state = new HashMap<>();
+        FileJournal journal = createJournal();
+        journal.open(x -> apply(state, x), () -> new ArrayList<>(state.values()));
+
+        Widget widget = getWidget(5);
+        journal.append(JournalRecord.save(widget));
+        state.put(widget.getId(), widget);
+        journal.compact();
+        journal.close();
+
+        // when
+        Map<UUID, BaseEntity> restoredState = reopen();
+
+        // then
+        assertTrue(Files.exists(directory.resolve(
+                String.format("snapshot-%019d.%s.bin", 2, Widget.class.getName()))));
+        assertEquals(1, restoredState.size());
+        assertEquals(5, ((Widget) restoredState.get(widget.getId())).getZ());
+    }
+
+    @Test
+    void open_TornLastRecord_RestoresPrecedingRecords() throws Exception {
+        // given
+        Map<UUID, BaseEntity> state = new HashMap<>();
+        FileJournal journal = createJournal();
+        journal.open(x -> apply(state, x), () -> new ArrayList<>(state.values()));
+
+        Widget widget1 = getWidget(1);
+        Widget widget2 = getWidget(2);
+        journal.append(JournalRecord.save(widget1));
+        journal.append(JournalRecord.save(widget2));
+        journal.close();
+
+        Path segment = Files.list(directory).filter(x -> x.toFile().length() > 0).findFirst().get();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        // when
+        Map<UUID, BaseEntity> restoredState = reopen();
+
+        // then
+        assertEquals(1, restoredState.size());
+        assertTrue(restoredState.containsKey(widget1.getId()));
+    }
+
+    @Test
+    void awaitDurable_FailedCompaction_KeepsFlushingRecords() throws Exception {
+        // given
+        FileJournal journal = new FileJournal(objectMapper, directory.toString(), 1, 1, true);
+        journal.open(x -> { }, () -> {
+            throw new IllegalStateException("Snapshot isn't available");
+        });
+        journal.awaitDurable(journal.append(JournalRecord.save(getWidget(1))));
+        Thread.sleep(50);
+
+        // when
+        long position = journal.append(JournalRecord.save(getWidget(2)));
+
+        // then
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> journal.awaitDurable(position));
+        journal.close();
+    }
+
+    @Test
+    void awaitDurable_FailedWrite_ThrowsAndRejectsFurtherAppends() throws Exception {
+        // given
+        FileJournal journal = new FileJournal(objectMapper, directory.toString(), 50, Long.MAX_VALUE, true);
+        journal.open(x -> { }, Collections::emptyList);
+        ((FileChannel) ReflectionTestUtils.getField(journal, "channel")).close();
+
+        // when
+        long position = journal.append(JournalRecord.save(getWidget(1)));
+
+        // then
+        assertTimeoutPreemptively(
+                Duration.ofSeconds(5),
+                () -> assertThrows(UncheckedIOException.class, () -> journal.awaitDurable(position)));
+        assertThrows(UncheckedIOException.class, () -> journal.append(JournalRecord.save(getWidget(2))));
+    }
+
+    private FileJournal createJournal() {
+        FileJournal journal = new FileJournal(objectMapper, directory.toString(), 1, Long.MAX_VALUE, true);
+        journal.setCodecs(Collections.singletonList(new WidgetSnapshotCodec()));
+
+        return journal;
+    }
+
+    private Map<UUID, BaseEntity> reopen() throws Exception {
+        Map<UUID, BaseEntity> state = new HashMap<>();
+        FileJournal journal = createJournal();
+        journal.open(x -> apply(state, x), () -> new ArrayList<>(state.values()));
+        journal.close();
+
+        return state;
+    }
+
+    private void apply(Map<UUID, BaseEntity> state, JournalRecord record) {
+        switch (record.getOperation()) {
+            case SAVE:
+                state.put(record.getId(), record.getEntity());
+                break;
+            case DELETE:
+                state.remove(record.getId());
+                break;
+            default:
+                state.clear();
+                break;
+        }
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private Widget getWidget(int z) {
+        Widget widget = new Widget();
+        widget.setId(widget.generateNewId());
+        widget.setX(10 * z);
+        widget.setY(20);
+        widget.setZ(z);
+        widget.setWidth(15.5);
+        widget.setHeight(30);
+        widget.setLastModified(ZonedDateTime.now());
+
+        return widget;
+    }
+}